@@ -0,0 +1,371 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates a deterministic corpus of HTML pages resembling the DocBook WebHelp output.
+ */
+public class CorpusGenerator {
+
+    public enum Language {
+
+        ENGLISH("org.tartarus.snowball.ext.EnglishStemmer",
+                new String[]{"the", "a", "of", "and", "to", "in", "is", "for", "with", "on"},
+                new String[]{"document", "section", "chapter", "index", "search", "stylesheet", "parameter", "template",
+                    "element", "attribute", "processing", "transformation", "output", "generated", "customization",
+                    "reference", "example", "configuration", "running", "builds", "files", "pages", "content",
+                    "keywords", "weighted", "stemming", "languages", "navigation", "table", "figure", "listing",
+                    "callout", "glossary", "appendix", "installation", "requirements", "café", "naïve", "résumé"}),
+        GERMAN("org.tartarus.snowball.ext.GermanStemmer",
+                new String[]{"der", "die", "das", "und", "in", "zu", "den", "mit", "von", "ist"},
+                new String[]{"Dokument", "Abschnitt", "Kapitel", "Verzeichnis", "Suche", "Stilvorlage", "Parameter",
+                    "Vorlage", "Element", "Attribut", "Verarbeitung", "Umwandlung", "Ausgabe", "erzeugte", "Anpassung",
+                    "Referenz", "Beispiel", "Konfiguration", "Übersetzung", "Dateien", "Seiten", "Inhalt",
+                    "Schlüsselwörter", "gewichtete", "Grundformreduktion", "Sprachen", "Navigation", "Tabelle",
+                    "Abbildung", "Größe", "Glossar", "Anhang", "Installation", "Voraussetzungen", "Straße", "Häuser"}),
+        FRENCH("org.tartarus.snowball.ext.FrenchStemmer",
+                new String[]{"le", "la", "les", "de", "des", "et", "un", "une", "en", "pour"},
+                new String[]{"document", "section", "chapitre", "index", "recherche", "feuille", "paramètre", "modèle",
+                    "élément", "attribut", "traitement", "transformation", "sortie", "générée", "personnalisation",
+                    "référence", "exemple", "configuration", "fichiers", "pages", "contenu", "mots-clés", "pondérés",
+                    "racinisation", "langues", "navigation", "tableau", "figure", "listing", "glossaire", "annexe",
+                    "installation", "prérequis", "déjà", "être", "où", "garçon", "cœur"});
+
+        private final String stemmerClassName;
+        private final String[] stopwords;
+        private final String[] words;
+
+        private Language(String stemmerClassName, String[] stopwords, String[] words) {
+            this.stemmerClassName = stemmerClassName;
+            this.stopwords = stopwords;
+            this.words = words;
+        }
+
+        public String getStemmerClassName() {
+            return stemmerClassName;
+        }
+
+        /**
+         * Returns the stopwords in the format produced by the StopwordsParser.
+         */
+        public String getStopwordsRegexPattern() {
+
+            StringBuilder stopwordsRegexPattern = new StringBuilder();
+
+            for (String stopword : stopwords) {
+                stopwordsRegexPattern.append("\\b").append(stopword).append("\\b|");
+            }
+
+            return stopwordsRegexPattern.toString();
+        }
+    }
+
+    public enum MarkupMix {
+
+        /**
+         * Paragraphs only, with a single heading per page.
+         */
+        PLAIN(0, 0, 0, 1),
+        /**
+         * Occasional subsections and inline emphasis.
+         */
+        MIXED(10, 5, 0, 2),
+        /**
+         * Deeply nested subsections, frequent emphasis and character references.
+         */
+        RICH(25, 20, 5, 4);
+
+        private final int headingPercentage;
+        private final int emphasisPercentage;
+        private final int referencePercentage;
+        private final int maxDepth;
+
+        private MarkupMix(int headingPercentage, int emphasisPercentage, int referencePercentage, int maxDepth) {
+            this.headingPercentage = headingPercentage;
+            this.emphasisPercentage = emphasisPercentage;
+            this.referencePercentage = referencePercentage;
+            this.maxDepth = maxDepth;
+        }
+    }
+
+    private static final String PARAM_OUTPUT_FOLDER_PATH = "-outputFolderPath";
+    private static final String PARAM_FILE_COUNT = "-fileCount";
+    private static final String PARAM_PARAGRAPH_COUNT = "-paragraphCount";
+    private static final String PARAM_LANGUAGE = "-language";
+    private static final String PARAM_MARKUP = "-markup";
+    private static final String PARAM_SEED = "-seed";
+
+    private static final String[] EMPHASIS_ELEMENTS = {"b", "strong", "em", "i"};
+    private static final int FILES_PER_CHAPTER = 20;
+
+    private int fileCount = 100;
+    private int paragraphCount = 20;
+    private Language language = Language.ENGLISH;
+    private MarkupMix markupMix = MarkupMix.MIXED;
+    private long seed = 1;
+
+    public static void main(String[] args) throws IOException {
+
+        Map<String, String> passedValuesMap = new HashMap<>();
+
+        for (String arg : args) {
+            int index = arg.indexOf(":");
+            if (index > 0 && index < arg.length() - 1) {
+                passedValuesMap.put(arg.substring(0, index), arg.substring(index + 1));
+            }
+        }
+
+        if (passedValuesMap.containsKey(PARAM_OUTPUT_FOLDER_PATH)) {
+
+            CorpusGenerator generator = new CorpusGenerator();
+
+            if (passedValuesMap.containsKey(PARAM_FILE_COUNT)) {
+                generator.setFileCount(Integer.parseInt(passedValuesMap.get(PARAM_FILE_COUNT)));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_PARAGRAPH_COUNT)) {
+                generator.setParagraphCount(Integer.parseInt(passedValuesMap.get(PARAM_PARAGRAPH_COUNT)));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_LANGUAGE)) {
+                generator.setLanguage(Language.valueOf(passedValuesMap.get(PARAM_LANGUAGE).toUpperCase()));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_MARKUP)) {
+                generator.setMarkupMix(MarkupMix.valueOf(passedValuesMap.get(PARAM_MARKUP).toUpperCase()));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_SEED)) {
+                generator.setSeed(Long.parseLong(passedValuesMap.get(PARAM_SEED)));
+            }
+
+            generator.generate(Paths.get(passedValuesMap.get(PARAM_OUTPUT_FOLDER_PATH)));
+
+        } else {
+
+            System.out.println("Usage: java -cp benchmarks.jar org.doctribute.html.indexer.CorpusGenerator \n"
+                    + "         -outputFolderPath:corpus \n"
+                    + "        [-fileCount:100] \n"
+                    + "        [-paragraphCount:20] \n"
+                    + "        [-language:english|german|french] \n"
+                    + "        [-markup:plain|mixed|rich] \n"
+                    + "        [-seed:1]"
+            );
+        }
+    }
+
+    /**
+     * Writes the pages into the given folder and returns their paths in the generation order.
+     */
+    public List<Path> generate(Path outputFolderPath) throws IOException {
+
+        Random random = new Random(seed);
+
+        List<Path> pathList = new ArrayList<>();
+
+        for (int i = 0; i < fileCount; i++) {
+
+            Path chapterFolderPath = outputFolderPath.resolve(String.format("ch%02d", i / FILES_PER_CHAPTER));
+            Files.createDirectories(chapterFolderPath);
+
+            Path path = chapterFolderPath.resolve(String.format("s%04d.html", i));
+
+            try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                writer.write(generatePage(random));
+            }
+
+            pathList.add(path);
+        }
+
+        return pathList;
+    }
+
+    private String generatePage(Random random) {
+
+        String title = getSentence(random, 2 + random.nextInt(4));
+
+        StringBuilder builder = new StringBuilder();
+
+        builder.append("<!DOCTYPE html>\n<html><head>")
+                .append("<meta http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\">")
+                .append("<title>").append(title).append("</title>")
+                .append("<meta name=\"Section-Title\" content=\"").append(title).append("\">")
+                .append("</head><body>\n")
+                .append("<div id=\"header\"><div id=\"header-content\"><p>").append(getSentence(random, 3)).append("</p></div></div>\n")
+                .append("<div id=\"navigation\"><ul><li><a href=\"index.html\">").append(getSentence(random, 2)).append("</a></li></ul></div>\n")
+                .append("<div id=\"content\"><div class=\"section\">\n")
+                .append("<h1>").append(title).append("</h1>\n");
+
+        int depth = 1;
+
+        for (int i = 0; i < paragraphCount; i++) {
+
+            if (random.nextInt(100) < markupMix.headingPercentage) {
+
+                if (depth < markupMix.maxDepth && random.nextBoolean()) {
+                    builder.append("<div class=\"section\">");
+                    depth++;
+
+                } else if (depth > 1) {
+                    builder.append("</div>");
+                    depth--;
+                }
+
+                builder.append("<h").append(Math.min(depth + 1, 6)).append('>').append(getSentence(random, 2 + random.nextInt(3)))
+                        .append("</h").append(Math.min(depth + 1, 6)).append(">\n");
+            }
+
+            builder.append("<p>");
+
+            int sentenceCount = 1 + random.nextInt(4);
+
+            for (int j = 0; j < sentenceCount; j++) {
+                appendSentence(builder, random, 5 + random.nextInt(15));
+                builder.append(". ");
+            }
+
+            builder.append("</p>\n");
+        }
+
+        while (depth-- > 0) {
+            builder.append("</div>");
+        }
+
+        builder.append("</div>\n<div id=\"footer\"><p>").append(getSentence(random, 4)).append("</p></div>\n</body></html>\n");
+
+        return builder.toString();
+    }
+
+    private void appendSentence(StringBuilder builder, Random random, int wordCount) {
+
+        for (int i = 0; i < wordCount; i++) {
+
+            if (i > 0) {
+                builder.append(random.nextInt(10) == 0 ? ", " : " ");
+            }
+
+            String word = getWord(random);
+
+            if (random.nextInt(100) < markupMix.emphasisPercentage) {
+                String elementName = EMPHASIS_ELEMENTS[random.nextInt(EMPHASIS_ELEMENTS.length)];
+                builder.append('<').append(elementName).append('>').append(word).append("</").append(elementName).append('>');
+
+            } else if (random.nextInt(100) < markupMix.referencePercentage) {
+                appendWithReference(builder, word);
+
+            } else {
+                builder.append(word);
+            }
+        }
+    }
+
+    private void appendWithReference(StringBuilder builder, String word) {
+
+        for (int i = 0; i < word.length(); i++) {
+
+            char c = word.charAt(i);
+
+            if (c > 127) {
+                builder.append("&#").append((int) c).append(';');
+            } else {
+                builder.append(c);
+            }
+        }
+
+        builder.append(" &amp;");
+    }
+
+    private String getSentence(Random random, int wordCount) {
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(getWord(random));
+        }
+
+        return builder.toString();
+    }
+
+    private String getWord(Random random) {
+
+        // roughly every third word is a stopword and the rest follows a skewed distribution
+        if (random.nextInt(3) == 0) {
+            return language.stopwords[random.nextInt(language.stopwords.length)];
+        }
+
+        double value = random.nextDouble();
+
+        return language.words[(int) (value * value * language.words.length)];
+    }
+
+    public void setFileCount(int fileCount) {
+        this.fileCount = fileCount;
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public void setParagraphCount(int paragraphCount) {
+        this.paragraphCount = paragraphCount;
+    }
+
+    public int getParagraphCount() {
+        return paragraphCount;
+    }
+
+    public void setLanguage(Language language) {
+        this.language = language;
+    }
+
+    public Language getLanguage() {
+        return language;
+    }
+
+    public void setMarkupMix(MarkupMix markupMix) {
+        this.markupMix = markupMix;
+    }
+
+    public MarkupMix getMarkupMix() {
+        return markupMix;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.tartarus.snowball.SnowballProgram;
+
+@State(Scope.Benchmark)
+public class CorpusState {
+
+    static final String CONTENT_ID_REGEX_PATTERN = "content";
+
+    @Param({"200"})
+    public int fileCount;
+
+    @Param({"ENGLISH", "GERMAN"})
+    public CorpusGenerator.Language language;
+
+    @Param({"PLAIN", "RICH"})
+    public CorpusGenerator.MarkupMix markupMix;
+
+    Path corpusFolderPath;
+    List<Path> pathList;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        // the same parser the indexer uses, even for benchmarks not creating an indexer
+        System.setProperty("org.xml.sax.driver", "org.ccil.cowan.tagsoup.Parser");
+        System.setProperty("javax.xml.parsers.SAXParserFactory", "org.ccil.cowan.tagsoup.jaxp.SAXFactoryImpl");
+
+        CorpusGenerator generator = new CorpusGenerator();
+        generator.setFileCount(fileCount);
+        generator.setLanguage(language);
+        generator.setMarkupMix(markupMix);
+
+        corpusFolderPath = Files.createTempDirectory("corpus");
+        pathList = generator.generate(corpusFolderPath);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        deleteFolder(corpusFolderPath);
+    }
+
+    SnowballProgram createStemmer() throws IOException {
+
+        try {
+            return Indexer.createStemmer(Class.forName(language.getStemmerClassName()).asSubclass(SnowballProgram.class));
+        } catch (ClassNotFoundException e) {
+            throw new IOException("The stemmer couldn't be initialized.", e);
+        }
+    }
+
+    static void deleteFolder(Path folderPath) throws IOException {
+
+        Files.walkFileTree(folderPath, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
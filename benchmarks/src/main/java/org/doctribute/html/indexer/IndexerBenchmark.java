@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.doctribute.html.indexer.model.FileInfo;
+import org.doctribute.html.indexer.model.InvertedIndex;
+import org.doctribute.html.indexer.util.CachingStemmer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tartarus.snowball.SnowballProgram;
+
+/**
+ * Measures extracting the postings of the whole corpus, i.e. parsing, tokenization, stemming and scoring.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexerBenchmark {
+
+    @State(Scope.Thread)
+    public static class IndexerState {
+
+        @Param({"false", "true"})
+        public boolean streaming;
+
+        SnowballProgram stemmer;
+        String stopwordsRegexPattern;
+
+        @Setup(Level.Trial)
+        public void setUp(CorpusState corpusState) throws IOException {
+            stemmer = corpusState.createStemmer();
+            stopwordsRegexPattern = corpusState.language.getStopwordsRegexPattern();
+        }
+    }
+
+    @Benchmark
+    public InvertedIndex extractData(CorpusState corpusState, IndexerState indexerState) throws IOException {
+
+        // a fresh stemmer cache for every pass, so the stemming cost isn't hidden by the previous iterations
+        SaxHtmlFileIndexer indexer = new SaxHtmlFileIndexer(new CachingStemmer(indexerState.stemmer),
+                indexerState.stopwordsRegexPattern, Indexer.DEFAULT_PUNCTUATION_REGEX_PATTERN);
+        indexer.setStreaming(indexerState.streaming);
+
+        for (Path path : corpusState.pathList) {
+            indexer.extractData(path, new FileInfo(), CorpusState.CONTENT_ID_REGEX_PATTERN);
+        }
+
+        return indexer.getInvertedIndex();
+    }
+}
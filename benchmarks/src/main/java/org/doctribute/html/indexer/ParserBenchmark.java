@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.doctribute.html.indexer.model.FileInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing the whole corpus into the content list, i.e. without tokenization.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @State(Scope.Thread)
+    public static class ParserState {
+
+        final SaxHtmlFileParser parser = new SaxHtmlFileParser();
+    }
+
+    @Benchmark
+    public int parseCorpus(CorpusState corpusState, ParserState parserState) throws IOException {
+
+        int contentCount = 0;
+
+        for (Path path : corpusState.pathList) {
+            parserState.parser.extractData(path, new FileInfo(), CorpusState.CONTENT_ID_REGEX_PATTERN);
+            contentCount += parserState.parser.contentInfoList.size();
+        }
+
+        return contentCount;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.doctribute.html.indexer.model.FileInfo;
+import org.doctribute.html.indexer.model.PostingList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures serializing the postings of the whole corpus into the index files.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteIndicesBenchmark {
+
+    @State(Scope.Thread)
+    public static class IndicesState {
+
+        Map<String, PostingList> indicesMap;
+        Path outputFolderPath;
+
+        @Setup(Level.Trial)
+        public void setUp(CorpusState corpusState) throws IOException {
+
+            SaxHtmlFileIndexer indexer = new SaxHtmlFileIndexer(corpusState.createStemmer(),
+                    corpusState.language.getStopwordsRegexPattern(), Indexer.DEFAULT_PUNCTUATION_REGEX_PATTERN);
+
+            for (Path path : corpusState.pathList) {
+                indexer.extractData(path, new FileInfo(), CorpusState.CONTENT_ID_REGEX_PATTERN);
+            }
+
+            indicesMap = indexer.getInvertedIndex().toMap();
+
+            outputFolderPath = Files.createTempDirectory("indices");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            CorpusState.deleteFolder(outputFolderPath);
+        }
+    }
+
+    @Benchmark
+    public void writeIndices(IndicesState indicesState) throws IOException {
+        Indexer.writeIndices(indicesState.indicesMap, indicesState.outputFolderPath);
+    }
+}
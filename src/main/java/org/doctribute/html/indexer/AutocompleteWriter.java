@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.doctribute.html.indexer.model.PostingList;
+
+/**
+ * Writes the prefix dictionary for the term completion. The terms have to be added in the sorted order.
+ * <p>
+ * The dictionary is a trie cut at the nodes with at most k terms. Every written prefix holds its top k completions
+ * ranked by the sum of the term scorings, e.g. <code>ac["con"]="figur,tent";</code> (the completions without the
+ * prefix). The children of a prefix are written only if the prefix has more than k terms, so the completions of any
+ * text are found by filtering the completions of its longest written prefix.
+ */
+class AutocompleteWriter implements Closeable {
+
+    static final String AUTOCOMPLETE_NAME = "autocomplete.js";
+    static final String AUTOCOMPLETE_LOOKUP_NAME = "autocomplete-lookup.js";
+
+    private final OutputSink outputSink;
+    private final int completionCount;
+    private final List<String> termList = new ArrayList<>();
+
+    private long[] scores = new long[1024];
+
+    AutocompleteWriter(OutputSink outputSink, int completionCount) {
+        this.outputSink = outputSink;
+        this.completionCount = completionCount;
+    }
+
+    void add(String term, PostingList postingList) {
+
+        long score = 0;
+
+        for (int i = 0; i < postingList.size(); i++) {
+            score += postingList.getScoring(i);
+        }
+
+        if (termList.size() == scores.length) {
+            scores = Arrays.copyOf(scores, 2 * scores.length);
+        }
+
+        scores[termList.size()] = score;
+        termList.add(term);
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        try (Writer writer = outputSink.newWriter(AUTOCOMPLETE_NAME)) {
+
+            writer.write("ac = new Array();\n");
+
+            if (!termList.isEmpty()) {
+                writeNode(writer, "", 0, termList.size());
+            }
+        }
+
+        Indexer.copyResource(AUTOCOMPLETE_LOOKUP_NAME, outputSink);
+    }
+
+    /**
+     * Removes the dictionary left from a previous run.
+     */
+    static void delete(OutputSink outputSink) throws IOException {
+        outputSink.deleteIfExists(AUTOCOMPLETE_NAME);
+        outputSink.deleteIfExists(AUTOCOMPLETE_LOOKUP_NAME);
+    }
+
+    /**
+     * Writes the prefix shared by the terms in the given range and, if it has too many terms, its children.
+     */
+    private void writeNode(Writer writer, String prefix, int start, int end) throws IOException {
+
+        writer.write("ac[\"" + prefix + "\"]=\"");
+
+        List<Integer> completionList = getTopCompletions(start, end);
+
+        for (int i = 0; i < completionList.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(termList.get(completionList.get(i)), prefix.length(), termList.get(completionList.get(i)).length() - prefix.length());
+        }
+
+        writer.write("\";\n");
+
+        if (end - start <= completionCount) {
+            return;
+        }
+
+        int i = start;
+
+        // the term equal to the prefix sorts first and has no child
+        if (termList.get(i).length() == prefix.length()) {
+            i++;
+        }
+
+        while (i < end) {
+
+            String term = termList.get(i);
+            String childPrefix = term.substring(0, prefix.length() + Character.charCount(term.codePointAt(prefix.length())));
+
+            int childEnd = i + 1;
+
+            while (childEnd < end && termList.get(childEnd).startsWith(childPrefix)) {
+                childEnd++;
+            }
+
+            writeNode(writer, childPrefix, i, childEnd);
+
+            i = childEnd;
+        }
+    }
+
+    /**
+     * Returns the indices of the terms with the highest scores, the highest first. Equal scores keep the term order.
+     */
+    private List<Integer> getTopCompletions(int start, int end) {
+
+        Comparator<Integer> comparator = Comparator.<Integer>comparingLong(j -> scores[j]).thenComparing(Comparator.reverseOrder());
+
+        PriorityQueue<Integer> queue = new PriorityQueue<>(comparator);
+
+        for (int j = start; j < end; j++) {
+
+            queue.add(j);
+
+            if (queue.size() > completionCount) {
+                queue.poll();
+            }
+        }
+
+        List<Integer> completionList = new ArrayList<>(queue);
+        completionList.sort(comparator.reversed());
+
+        return completionList;
+    }
+}
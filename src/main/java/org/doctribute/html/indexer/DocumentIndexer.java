@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.doctribute.html.indexer.model.FileInfo;
+import org.doctribute.html.indexer.model.IndexerOptions;
+import org.doctribute.html.indexer.model.PostingList;
+import org.doctribute.html.indexer.model.TermVector;
+import org.tartarus.snowball.SnowballProgram;
+import org.xml.sax.InputSource;
+
+/**
+ * Indexes HTML documents held in memory, e.g. by a documentation server, and writes the search index into any
+ * {@link OutputSink}. The indexer is configured once and can be shared by concurrent builds; the parsers are kept
+ * between builds, so a long running service pays the setup just once.
+ * <p>
+ * The documents are added to a {@link Build} by their logical paths, which are written into the file info list as
+ * they are. The output is the same as of the {@link Indexer} run over the folder holding the documents under these
+ * paths. Positions, gzip compressed copies and the term vector cache aren't supported.
+ */
+public class DocumentIndexer {
+
+    private final String contentIDRegexPattern;
+    private final Class<? extends SnowballProgram> stemmerClass;
+    private final String stopwordsRegexPattern;
+    private final String punctuationRegexPattern;
+    private final IndexerOptions options;
+
+    private final Queue<SaxHtmlFileIndexer> indexerQueue = new ConcurrentLinkedQueue<>();
+
+    public DocumentIndexer(String contentIDRegexPattern, SnowballProgram stemmer, String stopwordsRegexPattern, String punctuationRegexPattern, IndexerOptions options) {
+
+        if (options.isPositions()) {
+            throw new IllegalArgumentException("The positions aren't supported by the document indexer.");
+        }
+
+        this.contentIDRegexPattern = contentIDRegexPattern;
+        this.stemmerClass = stemmer.getClass();
+        this.stopwordsRegexPattern = stopwordsRegexPattern;
+        this.punctuationRegexPattern = punctuationRegexPattern;
+        this.options = options;
+    }
+
+    public Build newBuild() {
+        return new Build();
+    }
+
+    private TermVector extractTermVector(InputSource inputSource, FileInfo fileInfo) throws IOException {
+
+        SaxHtmlFileIndexer indexer = indexerQueue.poll();
+
+        if (indexer == null) {
+            indexer = new SaxHtmlFileIndexer(Indexer.createCachingStemmer(Indexer.createStemmer(stemmerClass), options), stopwordsRegexPattern, punctuationRegexPattern);
+            indexer.setStreaming(options.isStreaming());
+        }
+
+        try {
+            return indexer.extractTermVector(inputSource, fileInfo, contentIDRegexPattern);
+        } finally {
+            // the term vector holds the terms, so the dictionary doesn't have to grow with every build
+            indexer.getInvertedIndex().getTermDictionary().clear();
+            indexerQueue.add(indexer);
+        }
+    }
+
+    /**
+     * Collects the documents of a single index. The documents can be added from several threads; a document added
+     * under the same path again replaces the previous one.
+     */
+    public class Build {
+
+        private final Map<String, IndexedDocument> documentMap = new ConcurrentHashMap<>();
+
+        private Build() {
+        }
+
+        /**
+         * Adds the document encoded in UTF-8, unless it declares another encoding.
+         */
+        public void addDocument(String path, byte[] content) throws IOException {
+            addDocument(path, new ByteArrayInputStream(content));
+        }
+
+        /**
+         * Adds the document read from the stream encoded in UTF-8, unless it declares another encoding. The stream
+         * isn't closed.
+         */
+        public void addDocument(String path, InputStream inputStream) throws IOException {
+
+            InputSource inputSource = new InputSource(inputStream);
+            inputSource.setEncoding(StandardCharsets.UTF_8.name());
+
+            addDocument(path, inputSource);
+        }
+
+        public void addDocument(String path, CharSequence content) throws IOException {
+            addDocument(path, new InputSource(new StringReader(content.toString())));
+        }
+
+        private void addDocument(String path, InputSource inputSource) throws IOException {
+
+            FileInfo fileInfo = new FileInfo();
+            TermVector termVector = extractTermVector(inputSource, fileInfo);
+
+            documentMap.put(path, new IndexedDocument(fileInfo.getTitle(), termVector));
+        }
+
+        public int getDocumentCount() {
+            return documentMap.size();
+        }
+
+        /**
+         * Writes the file info list and the index files of the documents added so far. Nothing is written if no
+         * terms have been found.
+         */
+        public void write(OutputSink outputSink) throws IOException {
+
+            List<String> pathList = new ArrayList<>(documentMap.keySet());
+            Collections.sort(pathList);
+
+            Map<String, PostingList> indicesMap = new HashMap<>();
+
+            for (int i = 0; i < pathList.size(); i++) {
+
+                TermVector termVector = documentMap.get(pathList.get(i)).termVector;
+
+                for (int j = 0; j < termVector.size(); j++) {
+                    indicesMap.computeIfAbsent(termVector.getTerm(j), k -> new PostingList()).add(i, termVector.getScoring(j));
+                }
+            }
+
+            if (indicesMap.isEmpty()) {
+                return;
+            }
+
+            try (Writer writer = outputSink.newWriter(Indexer.FILE_INFO_LIST_NAME)) {
+
+                writer.write("fil = new Array();\n");
+
+                for (int i = 0; i < pathList.size(); i++) {
+                    Indexer.writeFileInfo(writer, i, pathList.get(i), documentMap.get(pathList.get(i)).title);
+                }
+            }
+
+            Indexer.writeIndices(IndexPruner.prune(indicesMap, pathList.size(), options), outputSink, options);
+        }
+    }
+
+    private static class IndexedDocument {
+
+        private final String title;
+        private final TermVector termVector;
+
+        private IndexedDocument(String title, TermVector termVector) {
+            this.title = title;
+            this.termVector = termVector;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import org.doctribute.html.indexer.util.GzipCompressor;
+import org.doctribute.html.indexer.util.OutputFiles;
+
+/**
+ * Writes the files into the output folder. If skipUnchanged is set, files whose content stays the same aren't
+ * rewritten. If the compressor is given, the compressed copies of the files are written as well.
+ */
+class FolderOutputSink implements OutputSink {
+
+    private final Path folderPath;
+    private final boolean skipUnchanged;
+    private final GzipCompressor compressor;
+
+    FolderOutputSink(Path folderPath, boolean skipUnchanged, GzipCompressor compressor) {
+        this.folderPath = folderPath;
+        this.skipUnchanged = skipUnchanged;
+        this.compressor = compressor;
+    }
+
+    @Override
+    public Writer newWriter(String fileName) throws IOException {
+        return OutputFiles.newWriter(folderPath.resolve(fileName), skipUnchanged, compressor);
+    }
+
+    @Override
+    public boolean deleteIfExists(String fileName) throws IOException {
+        return OutputFiles.deleteIfExists(folderPath.resolve(fileName));
+    }
+}
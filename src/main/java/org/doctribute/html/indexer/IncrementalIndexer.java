@@ -0,0 +1,277 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.doctribute.html.indexer.model.BuildPhase;
+import org.doctribute.html.indexer.model.FileInfo;
+import org.doctribute.html.indexer.model.IndexerOptions;
+import org.doctribute.html.indexer.model.InvertedIndex;
+import org.doctribute.html.indexer.model.ManifestEntry;
+import org.doctribute.html.indexer.model.PostingList;
+import org.doctribute.html.indexer.model.TermVector;
+import org.doctribute.html.indexer.util.BuildManifestFile;
+import org.doctribute.html.indexer.util.CachingStemmer;
+import org.doctribute.html.indexer.util.GzipCompressor;
+import org.doctribute.html.indexer.util.TermDictionary;
+import org.tartarus.snowball.SnowballProgram;
+
+/**
+ * Re-parses only added or changed HTML files. The term vectors of all the files are kept in the manifest stored
+ * in the output folder, so the postings of unchanged files are restored from there. The files keep their indices
+ * between runs; indices of deleted files are reused by the new ones.
+ */
+class IncrementalIndexer {
+
+    private static final String MANIFEST_FILE_NAME = ".index-manifest";
+    private static final String HASH_ALGORITHM = "SHA-1";
+
+    static void execute(Path sourceFolderPath, String contentIDRegexPattern, SnowballProgram stemmer, String stopwordsRegexPattern, String punctuationRegexPattern, IndexerOptions options) throws IOException {
+
+        List<Path> htmlPathList = new ArrayList<>(Indexer.getHtmlPathCollection(sourceFolderPath, options.getStatistics()));
+
+        if (htmlPathList.isEmpty()) {
+            return;
+        }
+
+        Collections.sort(htmlPathList);
+
+        Path outputFolderPath = sourceFolderPath.resolve(Indexer.OUTPUT_FOLDER_NAME);
+        Path manifestPath = outputFolderPath.resolve(MANIFEST_FILE_NAME);
+
+        String settingsFingerprint = stemmer.getClass().getName() + "\n" + contentIDRegexPattern + "\n" + stopwordsRegexPattern + "\n" + punctuationRegexPattern + "\n" + options.isStreaming() + "\n" + options.getShardCount() + "\n" + options.getShardSize() + "\n" + options.getIndexFormat() + "\n" + options.getAutocompleteSize() + "\n" + options.isGzip() + "\n" + options.getMaxDocumentFrequencyPercent() + "\n" + options.getMinPostingScore() + "\n" + options.getMaxPostingsPerTerm();
+
+        Map<String, ManifestEntry> previousEntryMap = BuildManifestFile.read(manifestPath, settingsFingerprint);
+
+        boolean manifestChanged = previousEntryMap.isEmpty();
+
+        Map<Path, ManifestEntry> manifestEntryMap = new LinkedHashMap<>();
+        List<Path> changedPathList = new ArrayList<>();
+
+        for (Path htmlPath : htmlPathList) {
+
+            String relativePath = sourceFolderPath.relativize(htmlPath).toString().replace("\\", "/");
+            BasicFileAttributes attributes = Files.readAttributes(htmlPath, BasicFileAttributes.class);
+
+            ManifestEntry manifestEntry = new ManifestEntry(relativePath);
+            manifestEntry.setSize(attributes.size());
+            manifestEntry.setLastModified(attributes.lastModifiedTime().toMillis());
+
+            ManifestEntry previousEntry = previousEntryMap.remove(relativePath);
+
+            if (previousEntry == null) {
+                manifestEntry.setFileIndex(-1);
+                manifestEntry.setHash(getHash(htmlPath));
+                changedPathList.add(htmlPath);
+
+            } else {
+
+                manifestEntry.setFileIndex(previousEntry.getFileIndex());
+
+                if (previousEntry.getSize() == manifestEntry.getSize() && previousEntry.getLastModified() == manifestEntry.getLastModified()) {
+                    manifestEntry.setHash(previousEntry.getHash());
+
+                } else {
+                    // the file might have been just touched
+                    manifestEntry.setHash(getHash(htmlPath));
+                    manifestChanged = true;
+                }
+
+                if (Arrays.equals(previousEntry.getHash(), manifestEntry.getHash())) {
+                    manifestEntry.setTitle(previousEntry.getTitle());
+                    manifestEntry.setTermVector(previousEntry.getTermVector());
+                } else {
+                    changedPathList.add(htmlPath);
+                }
+            }
+
+            manifestEntryMap.put(htmlPath, manifestEntry);
+        }
+
+        // the remaining entries belong to deleted files
+        boolean indexChanged = !changedPathList.isEmpty() || !previousEntryMap.isEmpty()
+                || Files.notExists(outputFolderPath.resolve(Indexer.FILE_INFO_LIST_NAME));
+
+        if (!indexChanged && !manifestChanged) {
+            return;
+        }
+
+        extractTermVectors(changedPathList, manifestEntryMap, contentIDRegexPattern, stemmer, stopwordsRegexPattern, punctuationRegexPattern, options);
+
+        Path[] htmlPaths = assignFileIndices(manifestEntryMap);
+
+        if (Files.notExists(outputFolderPath)) {
+            Files.createDirectories(outputFolderPath);
+        }
+
+        if (indexChanged) {
+
+            Map<Path, FileInfo> fileInfoMap = new LinkedHashMap<>();
+            Map<String, PostingList> indicesMap = new HashMap<>();
+
+            for (int i = 0; i < htmlPaths.length; i++) {
+
+                ManifestEntry manifestEntry = manifestEntryMap.get(htmlPaths[i]);
+
+                FileInfo fileInfo = new FileInfo();
+                fileInfo.setTitle(manifestEntry.getTitle());
+                fileInfoMap.put(htmlPaths[i], fileInfo);
+
+                TermVector termVector = manifestEntry.getTermVector();
+
+                for (int j = 0; j < termVector.size(); j++) {
+                    indicesMap.computeIfAbsent(termVector.getTerm(j), k -> new PostingList()).add(i, termVector.getScoring(j));
+                }
+            }
+
+            if (!indicesMap.isEmpty()) {
+
+                long startTime = System.nanoTime();
+
+                try (GzipCompressor compressor = Indexer.createCompressor(options)) {
+                    Indexer.writeFileInfoList(sourceFolderPath, outputFolderPath.resolve(Indexer.FILE_INFO_LIST_NAME), fileInfoMap, false, compressor);
+                    Indexer.writeIndices(IndexPruner.prune(indicesMap, htmlPaths.length, options), outputFolderPath, options, false, compressor);
+                }
+
+                Indexer.addPhaseNanos(options.getStatistics(), BuildPhase.WRITING, System.nanoTime() - startTime);
+            }
+        }
+
+        BuildManifestFile.write(manifestPath, settingsFingerprint, manifestEntryMap.values());
+    }
+
+    private static void extractTermVectors(List<Path> htmlPathList, Map<Path, ManifestEntry> manifestEntryMap, String contentIDRegexPattern, SnowballProgram stemmer, String stopwordsRegexPattern, String punctuationRegexPattern, IndexerOptions options) throws IOException {
+
+        if (htmlPathList.isEmpty()) {
+            return;
+        }
+
+        AtomicInteger nextIndex = new AtomicInteger();
+
+        int workerCount = Math.min(options.getThreadCount(), htmlPathList.size());
+
+        // the workers share the dictionary, so every term string is kept only once
+        TermDictionary termDictionary = new TermDictionary();
+
+        List<Callable<Void>> workerList = new ArrayList<>();
+
+        for (int i = 0; i < workerCount; i++) {
+
+            CachingStemmer workerStemmer = Indexer.createCachingStemmer((i == 0) ? stemmer : Indexer.createStemmer(stemmer.getClass()), options);
+
+            workerList.add(() -> {
+
+                SaxHtmlFileIndexer indexer = new SaxHtmlFileIndexer(workerStemmer, stopwordsRegexPattern, punctuationRegexPattern, new InvertedIndex(termDictionary));
+                indexer.setStreaming(options.isStreaming());
+                indexer.setInputMode(options.getInputMode());
+                indexer.setTermVectorCache(options.getTermVectorCache());
+                indexer.setStatistics(options.getStatistics());
+
+                int index;
+
+                while ((index = nextIndex.getAndIncrement()) < htmlPathList.size()) {
+
+                    Path htmlPath = htmlPathList.get(index);
+                    ManifestEntry manifestEntry = manifestEntryMap.get(htmlPath);
+
+                    FileInfo fileInfo = new FileInfo();
+                    manifestEntry.setTermVector(indexer.extractTermVector(htmlPath, fileInfo, contentIDRegexPattern));
+                    manifestEntry.setTitle(fileInfo.getTitle());
+                }
+
+                return null;
+            });
+        }
+
+        Indexer.runWorkers(workerList);
+    }
+
+    /**
+     * Keeps the previous indices where possible. New files (and files whose previous index is out of the current
+     * range) are assigned to free indices in the order of their paths.
+     */
+    private static Path[] assignFileIndices(Map<Path, ManifestEntry> manifestEntryMap) {
+
+        Path[] htmlPaths = new Path[manifestEntryMap.size()];
+
+        List<Path> unassignedPathList = new ArrayList<>();
+
+        for (Map.Entry<Path, ManifestEntry> entry : manifestEntryMap.entrySet()) {
+
+            int fileIndex = entry.getValue().getFileIndex();
+
+            if (fileIndex >= 0 && fileIndex < htmlPaths.length && htmlPaths[fileIndex] == null) {
+                htmlPaths[fileIndex] = entry.getKey();
+            } else {
+                unassignedPathList.add(entry.getKey());
+            }
+        }
+
+        int fileIndex = 0;
+
+        for (Path htmlPath : unassignedPathList) {
+
+            while (htmlPaths[fileIndex] != null) {
+                fileIndex++;
+            }
+
+            htmlPaths[fileIndex] = htmlPath;
+            manifestEntryMap.get(htmlPath).setFileIndex(fileIndex);
+        }
+
+        return htmlPaths;
+    }
+
+    private static byte[] getHash(Path path) throws IOException {
+
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance(HASH_ALGORITHM);
+
+            try (InputStream input = Files.newInputStream(path)) {
+
+                byte[] buffer = new byte[8192];
+                int count;
+
+                while ((count = input.read(buffer)) > 0) {
+                    messageDigest.update(buffer, 0, count);
+                }
+            }
+
+            return messageDigest.digest();
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.doctribute.html.indexer.model.IndexFormat;
+import org.doctribute.html.indexer.model.IndexerOptions;
+import org.doctribute.html.indexer.model.PostingList;
+import org.doctribute.html.indexer.model.PruningRule;
+import org.doctribute.html.indexer.util.BuildStatistics;
+
+/**
+ * Removes the postings of little value before the index is written, trading the recall for smaller shards. The rules
+ * are applied in order: the terms found in too many files are dropped, then the postings with a low scoring and
+ * finally all but the top scored postings of every term. The postings keep their positions.
+ * <p>
+ * For every rule the removed terms and postings are counted together with the bytes saved in the shards.
+ */
+class IndexPruner {
+
+    private final int maxDocumentFrequencyPercent;
+    private final int minPostingScore;
+    private final int maxPostingsPerTerm;
+    private final int fileCount;
+    private final IndexFormat indexFormat;
+    private final long[] termCounts = new long[PruningRule.values().length];
+    private final long[] postingCounts = new long[PruningRule.values().length];
+    private final long[] savedBytes = new long[PruningRule.values().length];
+
+    IndexPruner(IndexerOptions options, int fileCount) {
+        this.maxDocumentFrequencyPercent = options.getMaxDocumentFrequencyPercent();
+        this.minPostingScore = options.getMinPostingScore();
+        this.maxPostingsPerTerm = options.getMaxPostingsPerTerm();
+        this.fileCount = fileCount;
+        this.indexFormat = options.getIndexFormat();
+    }
+
+    /**
+     * Returns the map of the pruned postings, or the given map if no pruning is set. The given map and its posting
+     * lists are kept intact.
+     */
+    static Map<String, PostingList> prune(Map<String, PostingList> indicesMap, int fileCount, IndexerOptions options) {
+        return prune(indicesMap, fileCount, options, options.getStatistics());
+    }
+
+    /**
+     * Records the dropped terms and postings into the given statistics instead of the build statistics.
+     */
+    static Map<String, PostingList> prune(Map<String, PostingList> indicesMap, int fileCount, IndexerOptions options, BuildStatistics statistics) {
+
+        if (!options.isPruning()) {
+            return indicesMap;
+        }
+
+        IndexPruner pruner = new IndexPruner(options, fileCount);
+
+        Map<String, PostingList> prunedIndicesMap = new HashMap<>(2 * indicesMap.size());
+
+        for (Map.Entry<String, PostingList> entry : indicesMap.entrySet()) {
+
+            PostingList postingList = pruner.prune(entry.getKey(), entry.getValue());
+
+            if (postingList != null) {
+                prunedIndicesMap.put(entry.getKey(), postingList);
+            }
+        }
+
+        pruner.record(statistics);
+
+        return prunedIndicesMap;
+    }
+
+    /**
+     * Returns the pruned postings of the term, or null if the term is dropped.
+     */
+    PostingList prune(String term, PostingList postingList) {
+
+        if (maxDocumentFrequencyPercent > 0 && 100L * postingList.size() > (long) maxDocumentFrequencyPercent * fileCount) {
+            count(PruningRule.MAX_DOCUMENT_FREQUENCY, term, postingList, null);
+            return null;
+        }
+
+        if (minPostingScore > 0) {
+
+            PostingList prunedPostingList = new PostingList(postingList.size());
+
+            for (int i = 0; i < postingList.size(); i++) {
+                if (postingList.getScoring(i) >= minPostingScore) {
+                    addPosting(prunedPostingList, postingList, i);
+                }
+            }
+
+            postingList = count(PruningRule.MIN_POSTING_SCORE, term, postingList, prunedPostingList);
+
+            if (postingList == null) {
+                return null;
+            }
+        }
+
+        if (maxPostingsPerTerm > 0 && postingList.size() > maxPostingsPerTerm) {
+
+            // the inverted scoring goes to the upper bits, so the highest scorings (and then the lowest file indices) come first
+            long[] postings = new long[postingList.size()];
+
+            for (int i = 0; i < postings.length; i++) {
+                postings[i] = ((long) (Integer.MAX_VALUE - postingList.getScoring(i)) << 32) | i;
+            }
+
+            Arrays.sort(postings);
+
+            int[] keptIndices = new int[maxPostingsPerTerm];
+
+            for (int i = 0; i < keptIndices.length; i++) {
+                keptIndices[i] = (int) postings[i];
+            }
+
+            Arrays.sort(keptIndices);
+
+            PostingList prunedPostingList = new PostingList(keptIndices.length);
+
+            for (int i : keptIndices) {
+                addPosting(prunedPostingList, postingList, i);
+            }
+
+            postingList = count(PruningRule.MAX_POSTINGS_PER_TERM, term, postingList, prunedPostingList);
+        }
+
+        return postingList;
+    }
+
+    /**
+     * Adds the counts of the pruning to the statistics, if given.
+     */
+    void record(BuildStatistics statistics) {
+
+        if (statistics == null) {
+            return;
+        }
+
+        for (PruningRule rule : PruningRule.values()) {
+            if (isApplied(rule)) {
+                statistics.recordPruning(rule, termCounts[rule.ordinal()], postingCounts[rule.ordinal()], savedBytes[rule.ordinal()]);
+            }
+        }
+    }
+
+    private boolean isApplied(PruningRule rule) {
+
+        switch (rule) {
+            case MAX_DOCUMENT_FREQUENCY:
+                return maxDocumentFrequencyPercent > 0;
+            case MIN_POSTING_SCORE:
+                return minPostingScore > 0;
+            default:
+                return maxPostingsPerTerm > 0;
+        }
+    }
+
+    /**
+     * Counts the postings removed by the rule and returns the pruned postings, or null if none is left.
+     */
+    private PostingList count(PruningRule rule, String term, PostingList postingList, PostingList prunedPostingList) {
+
+        int prunedSize = (prunedPostingList != null) ? prunedPostingList.size() : 0;
+
+        if (prunedSize == postingList.size()) {
+            return postingList;
+        }
+
+        long bytes = getLineLength(term, postingList);
+
+        if (prunedSize > 0) {
+            bytes -= getLineLength(term, prunedPostingList);
+        } else {
+            termCounts[rule.ordinal()]++;
+        }
+
+        postingCounts[rule.ordinal()] += postingList.size() - prunedSize;
+        savedBytes[rule.ordinal()] += bytes;
+
+        return (prunedSize > 0) ? prunedPostingList : null;
+    }
+
+    private long getLineLength(String term, PostingList postingList) {
+        return IndexShardWriter.getLineLength(term, postingList, IndexShardWriter.encodePostings(postingList, indexFormat));
+    }
+
+    private static void addPosting(PostingList prunedPostingList, PostingList postingList, int i) {
+
+        if (postingList.hasPositions()) {
+            prunedPostingList.add(postingList.getFileIndex(i), postingList.getScoring(i), postingList.getPositionBlock(i));
+        } else {
+            prunedPostingList.add(postingList.getFileIndex(i), postingList.getScoring(i));
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import org.doctribute.html.indexer.model.IndexFormat;
+import org.doctribute.html.indexer.model.IndexerOptions;
+import org.doctribute.html.indexer.model.PostingList;
+import org.doctribute.html.indexer.util.BuildStatistics;
+import org.doctribute.html.indexer.util.CompactPostingCodec;
+import org.doctribute.html.indexer.util.PositionCodec;
+
+/**
+ * Writes the terms, passed in the sorted order, into shards of roughly the same size in bytes. A term belongs to the
+ * shard where the middle of its line falls, so the total size of all lines has to be known upfront.
+ * <p>
+ * Each non-empty shard is listed in the shard manifest together with the range of terms it holds, so the client can
+ * load just the shard it needs.
+ * <p>
+ * If the positions are enabled, the position blocks of the terms are written into separate files next to the shards,
+ * so they are loaded only for phrase queries.
+ */
+class IndexShardWriter implements Closeable {
+
+    static final String INDEX_SHARDS_NAME = "index-shards.js";
+    static final String INDEX_DECODER_NAME = "index-decoder.js";
+    static final String POSITIONS_DECODER_NAME = "positions-decoder.js";
+
+    private static final int LINE_OVERHEAD = "w[\"\"]=\"\";\n".length();
+
+    private final OutputSink outputSink;
+    private final boolean compact;
+    private final boolean positions;
+    private final long totalLength;
+    private final int shardCount;
+    private final BuildStatistics statistics;
+    private final Writer shardsWriter;
+
+    private Writer writer;
+    private Writer positionsWriter;
+    private int shardIndex = -1;
+    private long length = 0;
+    private String previousKey;
+    private String pendingShardName;
+    private String pendingFirstPrefix;
+
+    IndexShardWriter(OutputSink outputSink, IndexerOptions options, long totalLength) throws IOException {
+
+        this.outputSink = outputSink;
+        this.statistics = options.getStatistics();
+        this.compact = (options.getIndexFormat() == IndexFormat.COMPACT);
+        this.positions = options.isPositions();
+        this.totalLength = totalLength;
+
+        if (options.getShardSize() > 0) {
+            this.shardCount = (int) Math.max(1, (totalLength + options.getShardSize() - 1) / options.getShardSize());
+        } else {
+            this.shardCount = options.getShardCount();
+        }
+
+        this.shardsWriter = outputSink.newWriter(INDEX_SHARDS_NAME);
+
+        openNextShard();
+    }
+
+    /**
+     * Returns the postings encoded in the given format or null if the postings are written as they are.
+     */
+    static String encodePostings(PostingList postingList, IndexFormat indexFormat) {
+        return (indexFormat == IndexFormat.COMPACT) ? CompactPostingCodec.encode(postingList) : null;
+    }
+
+    static long getLineLength(String key, PostingList postingList, String encodedPostings) {
+        return LINE_OVERHEAD + getEncodedLength(key) + ((encodedPostings != null) ? encodedPostings.length() : postingList.getLength());
+    }
+
+    void write(String key, PostingList postingList, String encodedPostings) throws IOException {
+
+        long lineLength = getLineLength(key, postingList, encodedPostings);
+
+        if (statistics != null) {
+            statistics.recordTerm(key, postingList.size());
+        }
+
+        while (shardIndex < shardCount - 1 && 2 * length + lineLength > 2 * totalLength * (shardIndex + 1) / shardCount) {
+            openNextShard();
+        }
+
+        String shardName = getShardName(shardIndex);
+
+        if (pendingShardName != null && !pendingShardName.equals(shardName)) {
+            writeShardRange(getRangePrefix(previousKey, key));
+        }
+
+        if (pendingShardName == null) {
+            pendingShardName = shardName;
+            pendingFirstPrefix = (previousKey != null) ? getRangePrefix(previousKey, key) : "";
+        }
+
+        writer.write("w[\"" + key + "\"]" + "=\"");
+        if (compact) {
+            writer.write(encodedPostings);
+        } else {
+            postingList.appendTo(writer);
+        }
+        writer.write("\";\n");
+
+        if (positions && postingList.hasPositions()) {
+            writePositions(key, postingList);
+        }
+
+        length += lineLength;
+        previousKey = key;
+    }
+
+    private void writePositions(String key, PostingList postingList) throws IOException {
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < postingList.size(); i++) {
+            PositionCodec.appendTo(builder, postingList.getPositionBlock(i));
+        }
+
+        positionsWriter.write("p[\"" + key + "\"]=\"");
+        positionsWriter.append(builder);
+        positionsWriter.write("\";\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        while (shardIndex < shardCount - 1) {
+            openNextShard();
+        }
+
+        writer.close();
+
+        if (positionsWriter != null) {
+            positionsWriter.close();
+        }
+
+        if (pendingShardName != null) {
+            writeShardRange("");
+        }
+
+        shardsWriter.close();
+
+        // shards left from a previous run with more shards
+        for (int i = shardCount; outputSink.deleteIfExists(getShardName(i)); i++) {
+        }
+
+        for (int i = positions ? shardCount : 0; outputSink.deleteIfExists(getPositionsName(i)); i++) {
+        }
+
+        if (compact) {
+            Indexer.copyResource(INDEX_DECODER_NAME, outputSink);
+        } else {
+            outputSink.deleteIfExists(INDEX_DECODER_NAME);
+        }
+
+        if (positions) {
+            Indexer.copyResource(POSITIONS_DECODER_NAME, outputSink);
+        } else {
+            outputSink.deleteIfExists(POSITIONS_DECODER_NAME);
+        }
+    }
+
+    private void openNextShard() throws IOException {
+
+        if (writer != null) {
+            writer.close();
+        }
+
+        shardIndex++;
+        writer = outputSink.newWriter(getShardName(shardIndex));
+
+        if (positions) {
+
+            if (positionsWriter != null) {
+                positionsWriter.close();
+            }
+
+            positionsWriter = outputSink.newWriter(getPositionsName(shardIndex));
+        }
+    }
+
+    private void writeShardRange(String lastPrefix) throws IOException {
+        shardsWriter.write("shard[\"" + pendingShardName + "\"] = \"" + pendingFirstPrefix + "@@@" + lastPrefix + "\";\n");
+        pendingShardName = null;
+    }
+
+    private static String getShardName(int shardIndex) {
+        return "index-" + (shardIndex + 1) + ".js";
+    }
+
+    private static String getPositionsName(int shardIndex) {
+        return "positions-" + (shardIndex + 1) + ".js";
+    }
+
+    /**
+     * Returns the shortest prefix of the key that still sorts after the previous key. The prefix is the inclusive
+     * lower bound of the shard starting with the key and the exclusive upper bound of the shard ending with the
+     * previous key. An empty string means no bound.
+     */
+    private static String getRangePrefix(String previousKey, String key) {
+
+        int length = 0;
+
+        while (length < previousKey.length() && previousKey.charAt(length) == key.charAt(length)) {
+            length++;
+        }
+
+        length++;
+
+        if (Character.isHighSurrogate(key.charAt(length - 1)) && length < key.length()) {
+            length++;
+        }
+
+        return key.substring(0, length);
+    }
+
+    private static int getEncodedLength(String text) {
+
+        int length = 0;
+
+        for (int i = 0; i < text.length(); i++) {
+
+            char c = text.charAt(i);
+
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800 || Character.isSurrogate(c)) {
+                length += 2;
+            } else {
+                length += 3;
+            }
+        }
+
+        return length;
+    }
+}
@@ -18,8 +18,11 @@
  */
 package org.doctribute.html.indexer;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -33,11 +36,33 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.doctribute.html.indexer.model.BuildPhase;
+import org.doctribute.html.indexer.model.EvictionPolicy;
 import org.doctribute.html.indexer.model.FileInfo;
+import org.doctribute.html.indexer.model.IndexFormat;
+import org.doctribute.html.indexer.model.IndexLanguage;
+import org.doctribute.html.indexer.model.IndexerOptions;
+import org.doctribute.html.indexer.model.InputMode;
+import org.doctribute.html.indexer.model.InvertedIndex;
+import org.doctribute.html.indexer.model.PostingList;
+import org.doctribute.html.indexer.model.PruningRule;
+import org.doctribute.html.indexer.util.BuildReportFile;
+import org.doctribute.html.indexer.util.BuildStatistics;
+import org.doctribute.html.indexer.util.CachingStemmer;
+import org.doctribute.html.indexer.util.GzipCompressor;
+import org.doctribute.html.indexer.util.OutputFiles;
 import org.doctribute.html.indexer.util.StopwordsParser;
 import org.doctribute.html.indexer.util.PunctuationParser;
+import org.doctribute.html.indexer.util.TermDictionary;
+import org.doctribute.html.indexer.util.TermVectorCache;
 import org.tartarus.snowball.SnowballProgram;
 
 public class Indexer {
@@ -47,11 +72,40 @@ public class Indexer {
     private static final String PARAM_CONTENT_IDS = "-contentIDs";
     private static final String PARAM_STOPWORDS_FILE_PATH = "-stopwordsFilePath";
     private static final String PARAM_PUNCTUATION_FILE_PATH = "-punctuationFilePath";
+    private static final String PARAM_THREADS = "-threads";
+    private static final String PARAM_INCREMENTAL = "-incremental";
+    private static final String PARAM_STEM_CACHE_SIZE = "-stemCacheSize";
+    private static final String PARAM_STEM_CACHE_POLICY = "-stemCachePolicy";
+    private static final String PARAM_STREAMING = "-streaming";
+    private static final String PARAM_INPUT_MODE = "-inputMode";
+    private static final String PARAM_SHARD_COUNT = "-shardCount";
+    private static final String PARAM_SHARD_SIZE = "-shardSize";
+    private static final String PARAM_INDEX_FORMAT = "-indexFormat";
+    private static final String PARAM_AUTOCOMPLETE_SIZE = "-autocompleteSize";
+    private static final String PARAM_POSITIONS = "-positions";
+    private static final String PARAM_GZIP = "-gzip";
+    private static final String PARAM_MAX_DOCUMENT_FREQUENCY_PERCENT = "-maxDocumentFrequencyPercent";
+    private static final String PARAM_MIN_POSTING_SCORE = "-minPostingScore";
+    private static final String PARAM_MAX_POSTINGS_PER_TERM = "-maxPostingsPerTerm";
+    private static final String PARAM_MAX_HEAP_FOR_INDEX_MB = "-maxHeapForIndexMB";
+    private static final String PARAM_PARTITION = "-partition";
+    private static final String PARAM_WATCH = "-watch";
+    private static final String PARAM_WATCH_DEBOUNCE = "-watchDebounce";
+    private static final String PARAM_TERM_VECTOR_CACHE_FOLDER_PATH = "-termVectorCacheFolderPath";
+    private static final String PARAM_TERM_VECTOR_CACHE_SIZE_MB = "-termVectorCacheSizeMB";
+    private static final String PARAM_REPORT_FILE_PATH = "-reportFilePath";
+    private static final String PARAM_JFR = "-jfr";
+
+    interface HtmlPathHandler {
+
+        void handlePath(Path path) throws IOException;
+    }
 
-    private static final String OUTPUT_FOLDER_NAME = "search";
-    private static final String FILE_INFO_LIST_NAME = "file-info-list.js";
+    static final String OUTPUT_FOLDER_NAME = "search";
+    static final String FILE_INFO_LIST_NAME = "file-info-list.js";
+    private static final int DEFAULT_TERM_VECTOR_CACHE_SIZE_MB = 1024;
     private static final String DEFAULT_CONTENT_ID_REGEX_PATTERN = "content";
-    private static final String DEFAULT_PUNCTUATION_REGEX_PATTERN = "[$\\|%,;'()\\\\/*\"{}=!&+<>#‚’‘”“´…\\?\\u00A0]|\\[|\\]|[-][-]+";
+    public static final String DEFAULT_PUNCTUATION_REGEX_PATTERN = "[$\\|%,;'()\\\\/*\"{}=!&+<>#‚’‘”“´…\\?\\u00A0]|\\[|\\]|[-][-]+";
 
     public static void main(String[] args) throws IOException {
 
@@ -66,14 +120,38 @@ public class Indexer {
 
         if (passedValuesMap.containsKey(PARAM_SOURCE_FOLDER_PATH) && passedValuesMap.containsKey(PARAM_STEMMER_CLASS_NAME)) {
 
-            SnowballProgram stemmer = null;
+            String[] stemmerClassNames = passedValuesMap.get(PARAM_STEMMER_CLASS_NAME).split(",");
+            String[] stopwordsFilePaths = new String[0];
 
-            try {
-                Class stemmerClass = Class.forName(passedValuesMap.get(PARAM_STEMMER_CLASS_NAME));
-                stemmer = (SnowballProgram) stemmerClass.newInstance();
+            if (passedValuesMap.containsKey(PARAM_STOPWORDS_FILE_PATH)) {
+                stopwordsFilePaths = passedValuesMap.get(PARAM_STOPWORDS_FILE_PATH).split(",");
+            }
 
-            } catch (ClassNotFoundException | IllegalAccessException | InstantiationException e) {
-                throw new IOException("The stemmer couldn't be initialized.", e);
+            if (stopwordsFilePaths.length > 1 && stopwordsFilePaths.length != stemmerClassNames.length) {
+                throw new IOException("The stopwordsFilePath value must list either a single file or a file for every stemmer.");
+            }
+
+            List<IndexLanguage> languageList = new ArrayList<>();
+
+            for (int i = 0; i < stemmerClassNames.length; i++) {
+
+                SnowballProgram stemmer = null;
+
+                try {
+                    Class stemmerClass = Class.forName(stemmerClassNames[i].trim());
+                    stemmer = (SnowballProgram) stemmerClass.newInstance();
+
+                } catch (ClassNotFoundException | IllegalAccessException | InstantiationException e) {
+                    throw new IOException("The stemmer couldn't be initialized.", e);
+                }
+
+                String stopwordsRegexPattern = "";
+
+                if (stopwordsFilePaths.length > 0) {
+                    stopwordsRegexPattern = StopwordsParser.getStopwordsRegexPattern(Paths.get(stopwordsFilePaths[Math.min(i, stopwordsFilePaths.length - 1)].trim()));
+                }
+
+                languageList.add(new IndexLanguage(getLanguageName(stemmer.getClass()), stemmer, stopwordsRegexPattern));
             }
 
             Path sourceFolderPath = Paths.get(passedValuesMap.get(PARAM_SOURCE_FOLDER_PATH));
@@ -84,19 +162,139 @@ public class Indexer {
                 contentIDRegexPattern = getContentIDRegexPattern(passedValuesMap.get(PARAM_CONTENT_IDS));
             }
 
-            String stopwordsRegexPattern = "";
-
-            if (passedValuesMap.containsKey(PARAM_STOPWORDS_FILE_PATH)) {
-                stopwordsRegexPattern = StopwordsParser.getStopwordsRegexPattern(Paths.get(passedValuesMap.get(PARAM_STOPWORDS_FILE_PATH)));
-            }
-
             String punctuationRegexPattern = DEFAULT_PUNCTUATION_REGEX_PATTERN;
 
             if (passedValuesMap.containsKey(PARAM_PUNCTUATION_FILE_PATH)) {
                 punctuationRegexPattern = PunctuationParser.getPunctuationRegexPattern(Paths.get(passedValuesMap.get(PARAM_PUNCTUATION_FILE_PATH)));
             }
 
-            execute(sourceFolderPath, contentIDRegexPattern, stemmer, stopwordsRegexPattern, punctuationRegexPattern);
+            IndexerOptions options = new IndexerOptions();
+
+            if (passedValuesMap.containsKey(PARAM_THREADS)) {
+                options.setThreadCount(getPositiveInt(passedValuesMap, PARAM_THREADS));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_INCREMENTAL)) {
+                options.setIncremental(Boolean.parseBoolean(passedValuesMap.get(PARAM_INCREMENTAL)));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_STEM_CACHE_SIZE)) {
+                options.setStemCacheSize(getNonNegativeInt(passedValuesMap, PARAM_STEM_CACHE_SIZE));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_STEM_CACHE_POLICY)) {
+                try {
+                    options.setStemCachePolicy(EvictionPolicy.valueOf(passedValuesMap.get(PARAM_STEM_CACHE_POLICY).toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("The stemCachePolicy value must be one of: lru, fifo.", e);
+                }
+            }
+
+            if (passedValuesMap.containsKey(PARAM_STREAMING)) {
+                options.setStreaming(Boolean.parseBoolean(passedValuesMap.get(PARAM_STREAMING)));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_INPUT_MODE)) {
+                try {
+                    options.setInputMode(InputMode.valueOf(passedValuesMap.get(PARAM_INPUT_MODE).toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("The inputMode value must be one of: stream, buffer, mmap.", e);
+                }
+            }
+
+            if (passedValuesMap.containsKey(PARAM_SHARD_COUNT)) {
+                options.setShardCount(getPositiveInt(passedValuesMap, PARAM_SHARD_COUNT));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_SHARD_SIZE)) {
+                options.setShardSize(getPositiveInt(passedValuesMap, PARAM_SHARD_SIZE));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_INDEX_FORMAT)) {
+                try {
+                    options.setIndexFormat(IndexFormat.valueOf(passedValuesMap.get(PARAM_INDEX_FORMAT).toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("The indexFormat value must be one of: text, compact.", e);
+                }
+            }
+
+            if (passedValuesMap.containsKey(PARAM_AUTOCOMPLETE_SIZE)) {
+                options.setAutocompleteSize(getNonNegativeInt(passedValuesMap, PARAM_AUTOCOMPLETE_SIZE));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_POSITIONS)) {
+                options.setPositions(Boolean.parseBoolean(passedValuesMap.get(PARAM_POSITIONS)));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_GZIP)) {
+                options.setGzip(Boolean.parseBoolean(passedValuesMap.get(PARAM_GZIP)));
+            }
+
+            setPruning(options, passedValuesMap);
+
+            if (passedValuesMap.containsKey(PARAM_MAX_HEAP_FOR_INDEX_MB)) {
+                options.setMaxHeapForIndexMB(getPositiveInt(passedValuesMap, PARAM_MAX_HEAP_FOR_INDEX_MB));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_PARTITION)) {
+                setPartition(options, passedValuesMap.get(PARAM_PARTITION));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_WATCH)) {
+                options.setWatch(Boolean.parseBoolean(passedValuesMap.get(PARAM_WATCH)));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_WATCH_DEBOUNCE)) {
+                options.setWatchDebounceMillis(getNonNegativeInt(passedValuesMap, PARAM_WATCH_DEBOUNCE));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_TERM_VECTOR_CACHE_FOLDER_PATH)) {
+
+                int cacheSizeMB = DEFAULT_TERM_VECTOR_CACHE_SIZE_MB;
+
+                if (passedValuesMap.containsKey(PARAM_TERM_VECTOR_CACHE_SIZE_MB)) {
+                    cacheSizeMB = getPositiveInt(passedValuesMap, PARAM_TERM_VECTOR_CACHE_SIZE_MB);
+                }
+
+                options.setTermVectorCache(new TermVectorCache(Paths.get(passedValuesMap.get(PARAM_TERM_VECTOR_CACHE_FOLDER_PATH)), cacheSizeMB * 1024L * 1024L));
+            }
+
+            Path reportFilePath = null;
+
+            if (passedValuesMap.containsKey(PARAM_REPORT_FILE_PATH)) {
+                reportFilePath = Paths.get(passedValuesMap.get(PARAM_REPORT_FILE_PATH));
+            }
+
+            boolean jfr = Boolean.parseBoolean(passedValuesMap.get(PARAM_JFR));
+
+            // the statistics collect also the pruning summary
+            if ((reportFilePath != null || jfr || options.isPruning()) && !options.isWatch()) {
+
+                BuildStatistics statistics = new BuildStatistics();
+
+                if (jfr) {
+                    statistics.enableJfrEvents();
+                }
+
+                options.setStatistics(statistics);
+            }
+
+            execute(sourceFolderPath, contentIDRegexPattern, languageList, punctuationRegexPattern, options);
+
+            if (options.isPruning() && options.getStatistics() != null) {
+                printPruningSummary(options.getStatistics());
+            }
+
+            if (reportFilePath != null && options.getStatistics() != null) {
+
+                List<Path> outputFolderPathList = new ArrayList<>();
+
+                for (int i = 0; i < languageList.size(); i++) {
+                    outputFolderPathList.add(sourceFolderPath.resolve(getOutputFolderName(languageList, i)));
+                }
+
+                BuildReportFile.write(reportFilePath, sourceFolderPath, outputFolderPathList, options.getStatistics());
+            }
 
         } else {
 
@@ -105,48 +303,358 @@ public class Indexer {
                     + "- the stemmer class name (stemmerClassName)\n\n"
                     + "Usage: java -jar indexer.jar \n"
                     + "         -sourceFolderPath:output/html \n"
-                    + "         -stemmerClassName:org.tartarus.snowball.ext.EnglishStemmer \n"
+                    + "         -stemmerClassName:org.tartarus.snowball.ext.EnglishStemmer[,org.tartarus.snowball.ext.GermanStemmer] \n"
                     + "        [-contentIDs:header-content,body-content] \n"
-                    + "        [-stopwordsFilePath:search/stopwords.js] \n"
-                    + "        [-punctuationFilePath:search/punctuation.js]"
+                    + "        [-stopwordsFilePath:search/stopwords.js[,search/stopwords-de.js]] \n"
+                    + "        [-punctuationFilePath:search/punctuation.js] \n"
+                    + "        [-threads:4] \n"
+                    + "        [-incremental:true] \n"
+                    + "        [-stemCacheSize:10000] \n"
+                    + "        [-stemCachePolicy:lru|fifo] \n"
+                    + "        [-streaming:true] \n"
+                    + "        [-inputMode:stream|buffer|mmap] \n"
+                    + "        [-shardCount:3] \n"
+                    + "        [-shardSize:500000] \n"
+                    + "        [-indexFormat:text|compact] \n"
+                    + "        [-autocompleteSize:10] \n"
+                    + "        [-positions:true] \n"
+                    + "        [-gzip:true] \n"
+                    + "        [-maxDocumentFrequencyPercent:80] \n"
+                    + "        [-minPostingScore:2] \n"
+                    + "        [-maxPostingsPerTerm:500] \n"
+                    + "        [-maxHeapForIndexMB:256] \n"
+                    + "        [-partition:2/4] \n"
+                    + "        [-watch:true] \n"
+                    + "        [-watchDebounce:300] \n"
+                    + "        [-termVectorCacheFolderPath:/var/cache/html-files-indexer] \n"
+                    + "        [-termVectorCacheSizeMB:1024] \n"
+                    + "        [-reportFilePath:build-report.json] \n"
+                    + "        [-jfr:true]"
             );
         }
     }
 
+    static void setPruning(IndexerOptions options, Map<String, String> passedValuesMap) throws IOException {
+
+        if (passedValuesMap.containsKey(PARAM_MAX_DOCUMENT_FREQUENCY_PERCENT)) {
+
+            int maxDocumentFrequencyPercent = getPositiveInt(passedValuesMap, PARAM_MAX_DOCUMENT_FREQUENCY_PERCENT);
+
+            if (maxDocumentFrequencyPercent > 100) {
+                throw new IOException("The maxDocumentFrequencyPercent value must be between 1 and 100.");
+            }
+
+            options.setMaxDocumentFrequencyPercent(maxDocumentFrequencyPercent);
+        }
+
+        if (passedValuesMap.containsKey(PARAM_MIN_POSTING_SCORE)) {
+            options.setMinPostingScore(getPositiveInt(passedValuesMap, PARAM_MIN_POSTING_SCORE));
+        }
+
+        if (passedValuesMap.containsKey(PARAM_MAX_POSTINGS_PER_TERM)) {
+            options.setMaxPostingsPerTerm(getPositiveInt(passedValuesMap, PARAM_MAX_POSTINGS_PER_TERM));
+        }
+    }
+
+    static void printPruningSummary(BuildStatistics statistics) {
+
+        long totalBytes = 0;
+
+        for (PruningRule rule : statistics.getPruningRules()) {
+            System.out.println("Pruning by " + rule.getLabel() + ": " + statistics.getPrunedTermCount(rule) + " terms and "
+                    + statistics.getPrunedPostingCount(rule) + " postings dropped, " + statistics.getPrunedBytes(rule) + " bytes saved");
+            totalBytes += statistics.getPrunedBytes(rule);
+        }
+
+        System.out.println("Pruning saved " + totalBytes + " bytes in total");
+    }
+
     public static void execute(Path sourceFolderPath, String contentIDRegexPattern, SnowballProgram stemmer, String stopwordsRegexPattern, String punctuationRegexPattern) throws IOException {
+        execute(sourceFolderPath, contentIDRegexPattern, stemmer, stopwordsRegexPattern, punctuationRegexPattern, new IndexerOptions());
+    }
+
+    public static void execute(Path sourceFolderPath, String contentIDRegexPattern, SnowballProgram stemmer, String stopwordsRegexPattern, String punctuationRegexPattern, IndexerOptions options) throws IOException {
+
+        if (options.isPositions() && (options.isWatch() || options.isIncremental() || options.getMaxHeapForIndexMB() > 0)) {
+            throw new IOException("The positions are supported only by the in-memory build, not by the watch, incremental or maxHeapForIndexMB modes.");
+        }
+
+        if (options.getPartitionCount() > 0 && (options.isWatch() || options.isIncremental() || options.getMaxHeapForIndexMB() > 0 || options.isPositions())) {
+            throw new IOException("The partitioned build doesn't support the watch, incremental, maxHeapForIndexMB or positions modes.");
+        }
+
+        if (options.getPartitionCount() > 0 && (options.isPruning() || options.isGzip())) {
+            throw new IOException("The pruning and gzip options of the partitioned build have to be passed to the PartialIndexMerger.");
+        }
+
+        if (options.isWatch()) {
+            WatchIndexer.execute(sourceFolderPath, contentIDRegexPattern, stemmer, stopwordsRegexPattern, punctuationRegexPattern, options);
+            return;
+        }
+
+        long startTime = System.nanoTime();
+
+        if (options.isIncremental()) {
+            IncrementalIndexer.execute(sourceFolderPath, contentIDRegexPattern, stemmer, stopwordsRegexPattern, punctuationRegexPattern, options);
+
+        } else if (options.getPartitionCount() > 0) {
+            PartitionedIndexer.execute(sourceFolderPath, contentIDRegexPattern, stemmer, stopwordsRegexPattern, punctuationRegexPattern, options);
+
+        } else if (options.getMaxHeapForIndexMB() > 0) {
+            SpillingIndexer.execute(sourceFolderPath, contentIDRegexPattern, stemmer, stopwordsRegexPattern, punctuationRegexPattern, options);
+
+        } else {
+            List<IndexLanguage> languageList = Collections.singletonList(new IndexLanguage(getLanguageName(stemmer.getClass()), stemmer, stopwordsRegexPattern));
+            executeInMemory(sourceFolderPath, contentIDRegexPattern, languageList, punctuationRegexPattern, options);
+        }
+
+        if (options.getTermVectorCache() != null) {
+            options.getTermVectorCache().evict();
+        }
 
-        Collection htmlPathCollection = getHtmlPathCollection(sourceFolderPath);
+        if (options.getStatistics() != null) {
+            options.getStatistics().finish(System.nanoTime() - startTime);
+        }
+    }
 
-        if (htmlPathCollection.isEmpty()) {
+    /**
+     * Builds an index for every given language from a single pass over the source files. The files are parsed just
+     * once and the content is passed to all the stemmers. A single index is written into the usual output folder,
+     * several ones into the folders suffixed by the language names, e.g. <code>search-english</code>.
+     */
+    public static void execute(Path sourceFolderPath, String contentIDRegexPattern, List<IndexLanguage> languageList, String punctuationRegexPattern, IndexerOptions options) throws IOException {
+
+        if (languageList.size() == 1) {
+            IndexLanguage language = languageList.get(0);
+            execute(sourceFolderPath, contentIDRegexPattern, language.getStemmer(), language.getStopwordsRegexPattern(), punctuationRegexPattern, options);
             return;
         }
 
-        List<Path> htmlPathList = new ArrayList<>(htmlPathCollection);
-        Collections.sort(htmlPathList);
+        if (options.isWatch() || options.isIncremental() || options.getMaxHeapForIndexMB() > 0 || options.getPartitionCount() > 0) {
+            throw new IOException("Multiple stemmers are supported only by the in-memory build, not by the watch, incremental, maxHeapForIndexMB or partitioned modes.");
+        }
+
+        Collection<String> outputFolderNameCollection = new HashSet<>();
+
+        for (int i = 0; i < languageList.size(); i++) {
+            if (!outputFolderNameCollection.add(getOutputFolderName(languageList, i))) {
+                throw new IOException("The language names must be unique.");
+            }
+        }
+
+        long startTime = System.nanoTime();
+
+        executeInMemory(sourceFolderPath, contentIDRegexPattern, languageList, punctuationRegexPattern, options);
 
-        Map<String, String> indicesMap = new HashMap<>();
+        if (options.getStatistics() != null) {
+            options.getStatistics().finish(System.nanoTime() - startTime);
+        }
+    }
 
-        SaxHtmlFileIndexer indexer = new SaxHtmlFileIndexer(stemmer, stopwordsRegexPattern, punctuationRegexPattern, indicesMap);
+    private static void executeInMemory(Path sourceFolderPath, String contentIDRegexPattern, List<IndexLanguage> languageList, String punctuationRegexPattern, IndexerOptions options) throws IOException {
 
         Map<Path, FileInfo> fileInfoMap = new LinkedHashMap<>();
 
-        for (Path htmlPath : htmlPathList) {
-            FileInfo fileInfo = new FileInfo();
-            indexer.extractData(htmlPath, fileInfo, contentIDRegexPattern);
-            fileInfoMap.put(htmlPath, fileInfo);
+        InvertedIndex[] invertedIndices;
+
+        if (options.getThreadCount() > 1) {
+            invertedIndices = PipelinedIndexer.extractData(sourceFolderPath, fileInfoMap, contentIDRegexPattern, languageList, punctuationRegexPattern, options);
+
+        } else {
+
+            List<Path> htmlPathList = new ArrayList<>(getHtmlPathCollection(sourceFolderPath, options.getStatistics()));
+            Collections.sort(htmlPathList);
+
+            for (Path htmlPath : htmlPathList) {
+                fileInfoMap.put(htmlPath, new FileInfo());
+            }
+
+            invertedIndices = new InvertedIndex[languageList.size()];
+
+            for (int i = 0; i < invertedIndices.length; i++) {
+                invertedIndices[i] = new InvertedIndex(new TermDictionary());
+            }
+
+            SaxHtmlFileIndexer indexer = createIndexer(languageList, invertedIndices, false, punctuationRegexPattern, options);
+
+            for (Entry<Path, FileInfo> entry : fileInfoMap.entrySet()) {
+                indexer.extractData(entry.getKey(), entry.getValue(), contentIDRegexPattern);
+            }
         }
 
-        if (!indicesMap.isEmpty()) {
+        for (int i = 0; i < invertedIndices.length; i++) {
+
+            if (invertedIndices[i].isEmpty()) {
+                continue;
+            }
 
-            Path outputFolderPath = sourceFolderPath.resolve(OUTPUT_FOLDER_NAME);
+            Path outputFolderPath = sourceFolderPath.resolve(getOutputFolderName(languageList, i));
 
             if (Files.notExists(outputFolderPath)) {
                 Files.createDirectories(outputFolderPath);
             }
 
-            writeFileInfoList(sourceFolderPath, outputFolderPath.resolve(FILE_INFO_LIST_NAME), fileInfoMap);
-            writeIndices(indicesMap, outputFolderPath);
+            long startTime = System.nanoTime();
+
+            try (GzipCompressor compressor = createCompressor(options)) {
+                writeFileInfoList(sourceFolderPath, outputFolderPath.resolve(FILE_INFO_LIST_NAME), fileInfoMap, false, compressor);
+                writeIndices(IndexPruner.prune(invertedIndices[i].toMap(), fileInfoMap.size(), options), outputFolderPath, options, false, compressor);
+            }
+
+            addPhaseNanos(options.getStatistics(), BuildPhase.WRITING, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Creates the indexer of the first language passing the parsed content to the indexers of the other ones. The
+     * postings of every language are collected into the index at the same position. If stemmerCopies is set, new
+     * stemmer instances are used, so the indexer can run in parallel with others.
+     */
+    static SaxHtmlFileIndexer createIndexer(List<IndexLanguage> languageList, InvertedIndex[] invertedIndices, boolean stemmerCopies, String punctuationRegexPattern, IndexerOptions options) throws IOException {
+
+        SaxHtmlFileIndexer primaryIndexer = null;
+
+        for (int i = 0; i < languageList.size(); i++) {
+
+            IndexLanguage language = languageList.get(i);
+            SnowballProgram stemmer = stemmerCopies ? createStemmer(language.getStemmer().getClass()) : language.getStemmer();
+
+            SaxHtmlFileIndexer indexer = new SaxHtmlFileIndexer(createCachingStemmer(stemmer, options), language.getStopwordsRegexPattern(), punctuationRegexPattern, invertedIndices[i]);
+            indexer.setStreaming(options.isStreaming());
+            indexer.setPositions(options.isPositions());
+            indexer.setInputMode(options.getInputMode());
+            indexer.setTermVectorCache(options.getTermVectorCache());
+            indexer.setStatistics(options.getStatistics());
+
+            if (primaryIndexer == null) {
+                primaryIndexer = indexer;
+            } else {
+                primaryIndexer.addSecondaryIndexer(indexer);
+            }
+        }
+
+        return primaryIndexer;
+    }
+
+    static String getOutputFolderName(List<IndexLanguage> languageList, int i) {
+        return (languageList.size() == 1) ? OUTPUT_FOLDER_NAME : OUTPUT_FOLDER_NAME + "-" + languageList.get(i).getName();
+    }
+
+    /**
+     * Returns the lower case stemmer class name without the Stemmer suffix, e.g. english for the EnglishStemmer.
+     */
+    static String getLanguageName(Class<? extends SnowballProgram> stemmerClass) {
+
+        String name = stemmerClass.getSimpleName().toLowerCase(Locale.ROOT);
+
+        if (name.endsWith("stemmer") && name.length() > "stemmer".length()) {
+            name = name.substring(0, name.length() - "stemmer".length());
+        }
+
+        return name;
+    }
+
+    static <T> List<T> runWorkers(List<Callable<T>> workerList) throws IOException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(workerList.size());
+
+        try {
+            List<Future<T>> futureList = new ArrayList<>();
+
+            for (Callable<T> worker : workerList) {
+                futureList.add(executor.submit(worker));
+            }
+
+            List<T> resultList = new ArrayList<>();
+
+            for (Future<T> future : futureList) {
+                resultList.add(getWorkerResult(future));
+            }
+
+            return resultList;
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <T> T getWorkerResult(Future<T> future) throws IOException {
+
+        try {
+            return future.get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The indexing has been interrupted.", e);
+
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    static CachingStemmer createCachingStemmer(SnowballProgram stemmer, IndexerOptions options) {
+        return new CachingStemmer(stemmer, options.getStemCacheSize(), options.getStemCachePolicy());
+    }
+
+    static SnowballProgram createStemmer(Class<? extends SnowballProgram> stemmerClass) throws IOException {
+
+        try {
+            return stemmerClass.newInstance();
+
+        } catch (IllegalAccessException | InstantiationException e) {
+            throw new IOException("The stemmer couldn't be initialized.", e);
+        }
+    }
+
+    private static void setPartition(IndexerOptions options, String partition) throws IOException {
+
+        String[] parts = partition.split("/");
+
+        try {
+            if (parts.length == 2) {
+
+                int partitionNumber = Integer.parseInt(parts[0]);
+                int partitionCount = Integer.parseInt(parts[1]);
+
+                if (partitionNumber >= 1 && partitionNumber <= partitionCount) {
+                    options.setPartitionNumber(partitionNumber);
+                    options.setPartitionCount(partitionCount);
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+        }
+
+        throw new IOException("The partition value must be in the K/N form, where 1 <= K <= N, e.g. 2/4.");
+    }
+
+    static int getPositiveInt(Map<String, String> passedValuesMap, String paramName) throws IOException {
+
+        try {
+            int value = Integer.parseInt(passedValuesMap.get(paramName));
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+        }
+
+        throw new IOException("The " + paramName.substring(1) + " value must be a positive integer.");
+    }
+
+    static int getNonNegativeInt(Map<String, String> passedValuesMap, String paramName) throws IOException {
+
+        try {
+            int value = Integer.parseInt(passedValuesMap.get(paramName));
+            if (value >= 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
         }
+
+        throw new IOException("The " + paramName.substring(1) + " value must be a non-negative integer.");
     }
 
     private static String getContentIDRegexPattern(String delimitedContentIDs) {
@@ -165,63 +673,152 @@ public class Indexer {
         return contentIDRegexPattern;
     }
 
-    private static Collection<Path> getHtmlPathCollection(Path sourceFolderPath) throws IOException {
+    static void addPhaseNanos(BuildStatistics statistics, BuildPhase phase, long nanos) {
+
+        if (statistics != null) {
+            statistics.addPhaseNanos(phase, nanos);
+        }
+    }
+
+    static Collection<Path> getHtmlPathCollection(Path sourceFolderPath, BuildStatistics statistics) throws IOException {
+
+        long startTime = System.nanoTime();
+
+        Collection<Path> htmlPathCollection = getHtmlPathCollection(sourceFolderPath);
+
+        addPhaseNanos(statistics, BuildPhase.DISCOVERY, System.nanoTime() - startTime);
+
+        return htmlPathCollection;
+    }
+
+    static Collection<Path> getHtmlPathCollection(Path sourceFolderPath) throws IOException {
 
         Collection<Path> htmlPathColection = new HashSet<>();
 
+        walkHtmlFiles(sourceFolderPath, htmlPathColection::add);
+
+        return htmlPathColection;
+    }
+
+    /**
+     * Passes every HTML file found in the folder tree to the handler as soon as it's found.
+     */
+    static void walkHtmlFiles(Path sourceFolderPath, HtmlPathHandler htmlPathHandler) throws IOException {
+
         Files.walkFileTree(sourceFolderPath, new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
                 if (path.toString().endsWith(".html")) {
-                    htmlPathColection.add(path);
+                    htmlPathHandler.handlePath(path);
                 }
                 return FileVisitResult.CONTINUE;
             }
         });
+    }
 
-        return htmlPathColection;
+    /**
+     * Returns the compressor of the output files, or null if no compressed copies are written.
+     */
+    static GzipCompressor createCompressor(IndexerOptions options) {
+        return options.isGzip() ? new GzipCompressor() : null;
+    }
+
+    static void writeFileInfoList(Path sourceFolderPath, Path outputFilePath, Map<Path, FileInfo> fileInfoMap) throws IOException {
+        writeFileInfoList(sourceFolderPath, outputFilePath, fileInfoMap, false, null);
     }
 
-    private static void writeFileInfoList(Path sourceFolderPath, Path outputFilePath, Map<Path, FileInfo> fileInfoMap) throws IOException {
+    static void writeFileInfoList(Path sourceFolderPath, Path outputFilePath, Map<Path, FileInfo> fileInfoMap, boolean skipUnchanged, GzipCompressor compressor) throws IOException {
 
-        try (BufferedWriter writer = Files.newBufferedWriter(outputFilePath)) {
+        try (Writer writer = OutputFiles.newWriter(outputFilePath, skipUnchanged, compressor)) {
 
             writer.write("fil = new Array();\n");
 
             int i = 0;
             for (Entry<Path, FileInfo> entry : fileInfoMap.entrySet()) {
+                writeFileInfo(writer, i, sourceFolderPath.relativize(entry.getKey()).toString().replace("\\", "/"), entry.getValue().getTitle());
+                i++;
+            }
+        }
+    }
 
-                String title = entry.getValue().getTitle();
+    static void writeFileInfo(Writer writer, int fileIndex, String relativePath, String title) throws IOException {
 
-                if (title != null) {
-                    title = title.replaceAll("\\s+", " ");
-                    title = title.replaceAll("['�\"]", " ");
-                    title = title.replaceAll("\\\\", "\\\\\\\\");
-                }
-                writer.write("fil[\"" + i + "\"] = \"" + sourceFolderPath.relativize(entry.getKey()).toString().replace("\\", "/") + "@@@" + title + "\";\n");
-                i++;
+        if (title != null) {
+            title = title.replaceAll("\\s+", " ");
+            title = title.replaceAll("['�\"]", " ");
+            title = title.replaceAll("\\\\", "\\\\\\\\");
+        }
+        writer.write("fil[\"" + fileIndex + "\"] = \"" + relativePath + "@@@" + title + "\";\n");
+    }
+
+    /**
+     * Returns the title as written by {@link #writeFileInfo}, i.e. with the whitespace and quotes replaced, but no
+     * longer escaped. A missing title is written as null.
+     */
+    static String readFileInfoTitle(String writtenTitle) {
+        return writtenTitle.equals("null") ? null : writtenTitle.replace("\\\\", "\\");
+    }
+
+    static void copyResource(String name, OutputSink outputSink) throws IOException {
+
+        try (Reader reader = new InputStreamReader(Indexer.class.getResourceAsStream(name), StandardCharsets.UTF_8);
+                Writer writer = outputSink.newWriter(name)) {
+
+            char[] buffer = new char[8192];
+            int length;
+
+            while ((length = reader.read(buffer)) != -1) {
+                writer.write(buffer, 0, length);
             }
         }
     }
 
-    private static void writeIndices(Map<String, String> indicesMap, Path outputFolderPath) throws IOException {
+    static void writeIndices(Map<String, PostingList> indicesMap, Path outputFolderPath) throws IOException {
+        writeIndices(indicesMap, outputFolderPath, new IndexerOptions());
+    }
+
+    static void writeIndices(Map<String, PostingList> indicesMap, Path outputFolderPath, IndexerOptions options) throws IOException {
+        writeIndices(indicesMap, outputFolderPath, options, false, null);
+    }
+
+    /**
+     * If skipUnchanged is set, files whose content stays the same aren't rewritten. If the compressor is given, the
+     * compressed copies of the files are written as well.
+     */
+    static void writeIndices(Map<String, PostingList> indicesMap, Path outputFolderPath, IndexerOptions options, boolean skipUnchanged, GzipCompressor compressor) throws IOException {
+        writeIndices(indicesMap, new FolderOutputSink(outputFolderPath, skipUnchanged, compressor), options);
+    }
+
+    static void writeIndices(Map<String, PostingList> indicesMap, OutputSink outputSink, IndexerOptions options) throws IOException {
 
-        List<String> keyList = new ArrayList(indicesMap.keySet());
+        List<String> keyList = new ArrayList<>(indicesMap.keySet());
         Collections.sort(keyList);
 
-        int size = 1 + keyList.size() / 3;
+        String[] encodedPostings = new String[keyList.size()];
+        long totalLength = 0;
 
-        for (int i = 0; i < 3; i++) {
+        for (int j = 0; j < keyList.size(); j++) {
+            String key = keyList.get(j);
+            encodedPostings[j] = IndexShardWriter.encodePostings(indicesMap.get(key), options.getIndexFormat());
+            totalLength += IndexShardWriter.getLineLength(key, indicesMap.get(key), encodedPostings[j]);
+        }
 
-            try (BufferedWriter writer = Files.newBufferedWriter(outputFolderPath.resolve("index-" + (i + 1) + ".js"))) {
+        try (IndexShardWriter writer = new IndexShardWriter(outputSink, options, totalLength)) {
+            for (int j = 0; j < keyList.size(); j++) {
+                writer.write(keyList.get(j), indicesMap.get(keyList.get(j)), encodedPostings[j]);
+            }
+        }
 
-                int upperBound = Math.min(keyList.size(), i * size + size);
+        if (options.getAutocompleteSize() > 0) {
 
-                for (int j = i * size; j < upperBound; j++) {
-                    String key = keyList.get(j);
-                    writer.write("w[\"" + key + "\"]" + "=\"" + indicesMap.get(key) + "\";\n");
+            try (AutocompleteWriter writer = new AutocompleteWriter(outputSink, options.getAutocompleteSize())) {
+                for (String key : keyList) {
+                    writer.add(key, indicesMap.get(key));
                 }
             }
+
+        } else {
+            AutocompleteWriter.delete(outputSink);
         }
     }
 }
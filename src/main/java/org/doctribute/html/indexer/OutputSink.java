@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Receives the files written by the indexer, e.g. to keep them in memory or to send them over the network. Every file
+ * is opened by its name, e.g. <code>index-1.js</code>, and closed by the indexer once written.
+ */
+public interface OutputSink {
+
+    interface OutputStreamFactory {
+
+        OutputStream newOutputStream(String fileName) throws IOException;
+    }
+
+    Writer newWriter(String fileName) throws IOException;
+
+    /**
+     * Deletes the file left by a previous build, e.g. a shard not written anymore, and returns whether it existed.
+     * Sinks not keeping the files between builds don't have to implement it.
+     */
+    default boolean deleteIfExists(String fileName) throws IOException {
+        return false;
+    }
+
+    /**
+     * Returns the sink writing the files as UTF-8 into the streams opened by the given factory.
+     */
+    static OutputSink of(OutputStreamFactory outputStreamFactory) {
+        return fileName -> new BufferedWriter(new OutputStreamWriter(outputStreamFactory.newOutputStream(fileName), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the sink writing the files into the given folder, which deletes also the files left by previous builds.
+     */
+    static OutputSink toFolder(Path folderPath) {
+        return new FolderOutputSink(folderPath, false, null);
+    }
+}
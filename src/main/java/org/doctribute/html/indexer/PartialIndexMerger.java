@@ -0,0 +1,233 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.doctribute.html.indexer.model.IndexFormat;
+import org.doctribute.html.indexer.model.IndexerOptions;
+import org.doctribute.html.indexer.util.BuildStatistics;
+import org.doctribute.html.indexer.util.GzipCompressor;
+import org.doctribute.html.indexer.util.OutputFiles;
+
+/**
+ * Merges the partial indices written by the partitioned builds into the standard index files. The files of the
+ * partition K get the file indices following the files of all the partitions before it, so the result is the same as
+ * of a single build. The file info lists are copied line by line and the postings are merged term by term, so only
+ * the postings of a single term are kept in memory.
+ */
+public class PartialIndexMerger {
+
+    private static final String PARAM_SOURCE_FOLDER_PATH = "-sourceFolderPath";
+    private static final String PARAM_SHARD_COUNT = "-shardCount";
+    private static final String PARAM_SHARD_SIZE = "-shardSize";
+    private static final String PARAM_INDEX_FORMAT = "-indexFormat";
+    private static final String PARAM_AUTOCOMPLETE_SIZE = "-autocompleteSize";
+    private static final String PARAM_GZIP = "-gzip";
+
+    private static final Pattern PARTIAL_FOLDER_NAME_PATTERN = Pattern.compile(Pattern.quote(PartitionedIndexer.PARTIAL_FOLDER_PREFIX) + "(\\d+)-of-(\\d+)");
+    private static final String FILE_INFO_PREFIX = "fil[\"";
+
+    public static void main(String[] args) throws IOException {
+
+        Map<String, String> passedValuesMap = new HashMap<>();
+
+        for (String arg : args) {
+            int index = arg.indexOf(":");
+            if (index > 0 && index < arg.length() - 1) {
+                passedValuesMap.put(arg.substring(0, index), arg.substring(index + 1));
+            }
+        }
+
+        if (passedValuesMap.containsKey(PARAM_SOURCE_FOLDER_PATH)) {
+
+            IndexerOptions options = new IndexerOptions();
+
+            if (passedValuesMap.containsKey(PARAM_SHARD_COUNT)) {
+                options.setShardCount(Indexer.getPositiveInt(passedValuesMap, PARAM_SHARD_COUNT));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_SHARD_SIZE)) {
+                options.setShardSize(Indexer.getPositiveInt(passedValuesMap, PARAM_SHARD_SIZE));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_INDEX_FORMAT)) {
+                try {
+                    options.setIndexFormat(IndexFormat.valueOf(passedValuesMap.get(PARAM_INDEX_FORMAT).toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("The indexFormat value must be one of: text, compact.", e);
+                }
+            }
+
+            if (passedValuesMap.containsKey(PARAM_AUTOCOMPLETE_SIZE)) {
+                options.setAutocompleteSize(Indexer.getNonNegativeInt(passedValuesMap, PARAM_AUTOCOMPLETE_SIZE));
+            }
+
+            if (passedValuesMap.containsKey(PARAM_GZIP)) {
+                options.setGzip(Boolean.parseBoolean(passedValuesMap.get(PARAM_GZIP)));
+            }
+
+            Indexer.setPruning(options, passedValuesMap);
+
+            if (options.isPruning()) {
+                options.setStatistics(new BuildStatistics());
+            }
+
+            merge(Paths.get(passedValuesMap.get(PARAM_SOURCE_FOLDER_PATH)), options);
+
+            if (options.isPruning()) {
+                Indexer.printPruningSummary(options.getStatistics());
+            }
+
+        } else {
+
+            System.out.println("Specify at least:\n"
+                    + "- the directory containing html files indexed by the partitioned builds (sourceFolderPath)\n\n"
+                    + "Usage: java -cp indexer.jar org.doctribute.html.indexer.PartialIndexMerger \n"
+                    + "         -sourceFolderPath:output/html \n"
+                    + "        [-shardCount:3] \n"
+                    + "        [-shardSize:500000] \n"
+                    + "        [-indexFormat:text|compact] \n"
+                    + "        [-autocompleteSize:10] \n"
+                    + "        [-gzip:true] \n"
+                    + "        [-maxDocumentFrequencyPercent:80] \n"
+                    + "        [-minPostingScore:2] \n"
+                    + "        [-maxPostingsPerTerm:500]"
+            );
+        }
+    }
+
+    /**
+     * Merges all the partial indices found in the output folder and deletes them.
+     */
+    public static void merge(Path sourceFolderPath, IndexerOptions options) throws IOException {
+
+        Path outputFolderPath = sourceFolderPath.resolve(Indexer.OUTPUT_FOLDER_NAME);
+
+        List<Path> partialFolderPathList = getPartialFolderPaths(outputFolderPath);
+
+        List<Path> runPathList = new ArrayList<>();
+        int[] fileIndexOffsets = new int[partialFolderPathList.size()];
+
+        int fileCount = 0;
+
+        try (GzipCompressor compressor = Indexer.createCompressor(options)) {
+
+            try (Writer writer = OutputFiles.newWriter(outputFolderPath.resolve(Indexer.FILE_INFO_LIST_NAME), false, compressor)) {
+
+                writer.write("fil = new Array();\n");
+
+                for (int i = 0; i < partialFolderPathList.size(); i++) {
+                    fileIndexOffsets[i] = fileCount;
+                    fileCount += copyFileInfoList(partialFolderPathList.get(i).resolve(Indexer.FILE_INFO_LIST_NAME), writer, fileCount);
+                    runPathList.add(partialFolderPathList.get(i).resolve(PartitionedIndexer.POSTINGS_NAME));
+                }
+            }
+
+            SpillingIndexer.writeIndices(runPathList, fileIndexOffsets, fileCount, outputFolderPath, options, compressor);
+        }
+
+        for (Path partialFolderPath : partialFolderPathList) {
+            Files.delete(partialFolderPath.resolve(Indexer.FILE_INFO_LIST_NAME));
+            Files.delete(partialFolderPath.resolve(PartitionedIndexer.POSTINGS_NAME));
+            Files.delete(partialFolderPath);
+        }
+    }
+
+    /**
+     * Returns the partial index folders ordered by the partition, checking all the partitions are present.
+     */
+    private static List<Path> getPartialFolderPaths(Path outputFolderPath) throws IOException {
+
+        Map<Integer, Path> partialFolderPathMap = new TreeMap<>();
+        int partitionCount = 0;
+
+        if (Files.isDirectory(outputFolderPath)) {
+
+            try (DirectoryStream<Path> pathStream = Files.newDirectoryStream(outputFolderPath, Files::isDirectory)) {
+
+                for (Path path : pathStream) {
+
+                    Matcher matcher = PARTIAL_FOLDER_NAME_PATTERN.matcher(path.getFileName().toString());
+
+                    if (!matcher.matches()) {
+                        continue;
+                    }
+
+                    if (partitionCount > 0 && partitionCount != Integer.parseInt(matcher.group(2))) {
+                        throw new IOException("The partial indices belong to builds with different partition counts.");
+                    }
+
+                    partitionCount = Integer.parseInt(matcher.group(2));
+                    partialFolderPathMap.put(Integer.parseInt(matcher.group(1)), path);
+                }
+            }
+        }
+
+        if (partitionCount == 0) {
+            throw new IOException("No partial indices found in " + outputFolderPath + ".");
+        }
+
+        for (int partitionNumber = 1; partitionNumber <= partitionCount; partitionNumber++) {
+            if (!partialFolderPathMap.containsKey(partitionNumber)) {
+                throw new IOException("The partial index " + partitionNumber + " of " + partitionCount + " is missing.");
+            }
+        }
+
+        return new ArrayList<>(partialFolderPathMap.values());
+    }
+
+    /**
+     * Copies the file info lines shifting the file indices by the given offset and returns the number of files.
+     */
+    private static int copyFileInfoList(Path fileInfoListPath, Writer writer, int fileIndexOffset) throws IOException {
+
+        int fileCount = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(fileInfoListPath)) {
+
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+
+                int end = line.indexOf("\"]", FILE_INFO_PREFIX.length());
+
+                if (line.startsWith(FILE_INFO_PREFIX) && end > 0) {
+                    int fileIndex = Integer.parseInt(line.substring(FILE_INFO_PREFIX.length(), end)) + fileIndexOffset;
+                    writer.write(FILE_INFO_PREFIX + fileIndex + line.substring(end) + "\n");
+                    fileCount++;
+                }
+            }
+        }
+
+        return fileCount;
+    }
+}
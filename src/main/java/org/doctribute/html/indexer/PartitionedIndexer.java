@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.doctribute.html.indexer.model.BuildPhase;
+import org.doctribute.html.indexer.model.FileInfo;
+import org.doctribute.html.indexer.model.IndexLanguage;
+import org.doctribute.html.indexer.model.IndexerOptions;
+import org.doctribute.html.indexer.model.InvertedIndex;
+import org.doctribute.html.indexer.util.PostingRunFile;
+import org.doctribute.html.indexer.util.TermDictionary;
+import org.tartarus.snowball.SnowballProgram;
+
+/**
+ * Indexes a single partition of the sorted source files, so the build can be split among several processes. The
+ * partition K of N holds the K-th contiguous range of the sorted paths. Its partial index, i.e. the file info list
+ * and the postings sorted by the term with the file indices local to the partition, is written into its own folder
+ * and merged with the other partitions by the {@link PartialIndexMerger}.
+ */
+class PartitionedIndexer {
+
+    static final String PARTIAL_FOLDER_PREFIX = "partial-";
+    static final String POSTINGS_NAME = "postings.run";
+
+    static void execute(Path sourceFolderPath, String contentIDRegexPattern, SnowballProgram stemmer, String stopwordsRegexPattern, String punctuationRegexPattern, IndexerOptions options) throws IOException {
+
+        List<Path> htmlPathList = new ArrayList<>(Indexer.getHtmlPathCollection(sourceFolderPath, options.getStatistics()));
+        Collections.sort(htmlPathList);
+
+        int startIndex = (int) ((long) (options.getPartitionNumber() - 1) * htmlPathList.size() / options.getPartitionCount());
+        int endIndex = (int) ((long) options.getPartitionNumber() * htmlPathList.size() / options.getPartitionCount());
+
+        Map<Path, FileInfo> fileInfoMap = new LinkedHashMap<>();
+
+        for (Path htmlPath : htmlPathList.subList(startIndex, endIndex)) {
+            fileInfoMap.put(htmlPath, new FileInfo());
+        }
+
+        List<IndexLanguage> languageList = Collections.singletonList(new IndexLanguage(Indexer.getLanguageName(stemmer.getClass()), stemmer, stopwordsRegexPattern));
+
+        InvertedIndex invertedIndex = extractData(fileInfoMap, contentIDRegexPattern, languageList, punctuationRegexPattern, options);
+
+        Path partialFolderPath = sourceFolderPath.resolve(Indexer.OUTPUT_FOLDER_NAME).resolve(getPartialFolderName(options.getPartitionNumber(), options.getPartitionCount()));
+
+        if (Files.notExists(partialFolderPath)) {
+            Files.createDirectories(partialFolderPath);
+        }
+
+        long startTime = System.nanoTime();
+
+        // even an empty partition is written, so the merge can check all of them are present
+        Indexer.writeFileInfoList(sourceFolderPath, partialFolderPath.resolve(Indexer.FILE_INFO_LIST_NAME), fileInfoMap);
+        PostingRunFile.write(partialFolderPath.resolve(POSTINGS_NAME), invertedIndex.toMap());
+
+        Indexer.addPhaseNanos(options.getStatistics(), BuildPhase.WRITING, System.nanoTime() - startTime);
+    }
+
+    static String getPartialFolderName(int partitionNumber, int partitionCount) {
+        return PARTIAL_FOLDER_PREFIX + partitionNumber + "-of-" + partitionCount;
+    }
+
+    private static InvertedIndex extractData(Map<Path, FileInfo> fileInfoMap, String contentIDRegexPattern, List<IndexLanguage> languageList, String punctuationRegexPattern, IndexerOptions options) throws IOException {
+
+        List<Path> htmlPathList = new ArrayList<>(fileInfoMap.keySet());
+
+        AtomicInteger nextFileIndex = new AtomicInteger();
+
+        TermDictionary termDictionary = new TermDictionary();
+        InvertedIndex[] workerInvertedIndices = new InvertedIndex[Math.max(1, Math.min(options.getThreadCount(), htmlPathList.size()))];
+
+        List<Callable<Void>> workerList = new ArrayList<>();
+
+        for (int i = 0; i < workerInvertedIndices.length; i++) {
+
+            int workerIndex = i;
+
+            workerList.add(() -> {
+
+                InvertedIndex[] invertedIndices = {new InvertedIndex(termDictionary)};
+
+                SaxHtmlFileIndexer indexer = Indexer.createIndexer(languageList, invertedIndices, true, punctuationRegexPattern, options);
+
+                int fileIndex;
+
+                // every worker takes ascending file indices, so its postings stay sorted
+                while ((fileIndex = nextFileIndex.getAndIncrement()) < htmlPathList.size()) {
+                    Path htmlPath = htmlPathList.get(fileIndex);
+                    indexer.extractData(htmlPath, fileIndex, fileInfoMap.get(htmlPath), contentIDRegexPattern);
+                }
+
+                workerInvertedIndices[workerIndex] = invertedIndices[0];
+
+                return null;
+            });
+        }
+
+        Indexer.runWorkers(workerList);
+
+        InvertedIndex invertedIndex = new InvertedIndex(termDictionary);
+
+        for (InvertedIndex workerInvertedIndex : workerInvertedIndices) {
+            invertedIndex.merge(workerInvertedIndex);
+        }
+
+        return invertedIndex;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import org.doctribute.html.indexer.model.BuildPhase;
+import org.doctribute.html.indexer.model.FileInfo;
+import org.doctribute.html.indexer.model.IndexLanguage;
+import org.doctribute.html.indexer.model.IndexerOptions;
+import org.doctribute.html.indexer.model.InvertedIndex;
+import org.doctribute.html.indexer.util.TermDictionary;
+
+/**
+ * Extracts the postings in parallel while the source folder is still being traversed. The traversal feeds a bounded
+ * queue consumed by the workers, so the file system latency overlaps with the parsing. The files get temporary
+ * indices in the order they are found; once all of them are processed, the indices are remapped to the order of
+ * the sorted paths, so the output is the same as of the sequential build.
+ */
+class PipelinedIndexer {
+
+    private static final int QUEUE_CAPACITY = 1024;
+
+    // marks the end of the traversal, passed on by every worker to the next one
+    private static final DiscoveredFile END_OF_FILES = new DiscoveredFile(-1, null);
+
+    private static class DiscoveredFile {
+
+        private final int fileIndex;
+        private final Path path;
+        private final FileInfo fileInfo = new FileInfo();
+
+        DiscoveredFile(int fileIndex, Path path) {
+            this.fileIndex = fileIndex;
+            this.path = path;
+        }
+    }
+
+    /**
+     * Fills the given map with the found files in the sorted order and returns their postings, an index per language.
+     */
+    static InvertedIndex[] extractData(Path sourceFolderPath, Map<Path, FileInfo> fileInfoMap, String contentIDRegexPattern, List<IndexLanguage> languageList, String punctuationRegexPattern, IndexerOptions options) throws IOException {
+
+        BlockingQueue<DiscoveredFile> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        List<DiscoveredFile> discoveredFileList = new ArrayList<>();
+
+        TermDictionary[] termDictionaries = new TermDictionary[languageList.size()];
+
+        for (int j = 0; j < termDictionaries.length; j++) {
+            termDictionaries[j] = new TermDictionary();
+        }
+
+        InvertedIndex[][] workerInvertedIndices = new InvertedIndex[options.getThreadCount()][];
+
+        List<Callable<Void>> workerList = new ArrayList<>();
+
+        for (int i = 0; i < workerInvertedIndices.length; i++) {
+
+            int workerIndex = i;
+
+            workerList.add(() -> {
+
+                InvertedIndex[] invertedIndices = createInvertedIndices(termDictionaries);
+
+                SaxHtmlFileIndexer indexer = Indexer.createIndexer(languageList, invertedIndices, true, punctuationRegexPattern, options);
+
+                DiscoveredFile discoveredFile;
+
+                while ((discoveredFile = queue.take()) != END_OF_FILES) {
+                    indexer.extractData(discoveredFile.path, discoveredFile.fileIndex, discoveredFile.fileInfo, contentIDRegexPattern);
+                }
+
+                queue.put(END_OF_FILES);
+
+                workerInvertedIndices[workerIndex] = invertedIndices;
+
+                return null;
+            });
+        }
+
+        // the traversal goes last, so a failed worker is reported (and the traversal interrupted) without waiting for it
+        workerList.add(() -> {
+
+            long startTime = System.nanoTime();
+
+            // the time spent waiting for the workers isn't part of the discovery
+            long[] waitingNanos = {0};
+
+            try {
+                Indexer.walkHtmlFiles(sourceFolderPath, path -> {
+
+                    DiscoveredFile discoveredFile = new DiscoveredFile(discoveredFileList.size(), path);
+                    discoveredFileList.add(discoveredFile);
+
+                    long waitingStartTime = System.nanoTime();
+
+                    try {
+                        queue.put(discoveredFile);
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException("The indexing has been interrupted.");
+                    }
+
+                    waitingNanos[0] += System.nanoTime() - waitingStartTime;
+                });
+
+            } catch (IOException | RuntimeException e) {
+                // the workers stop at the end mark, the files still waiting in the queue aren't needed anymore
+                queue.clear();
+                queue.offer(END_OF_FILES);
+                throw e;
+
+            } finally {
+                Indexer.addPhaseNanos(options.getStatistics(), BuildPhase.DISCOVERY, System.nanoTime() - startTime - waitingNanos[0]);
+            }
+
+            queue.put(END_OF_FILES);
+
+            return null;
+        });
+
+        Indexer.runWorkers(workerList);
+
+        long startTime = System.nanoTime();
+
+        discoveredFileList.sort(Comparator.comparing(discoveredFile -> discoveredFile.path));
+
+        int[] fileIndexMap = new int[discoveredFileList.size()];
+
+        for (int i = 0; i < discoveredFileList.size(); i++) {
+            DiscoveredFile discoveredFile = discoveredFileList.get(i);
+            fileIndexMap[discoveredFile.fileIndex] = i;
+            fileInfoMap.put(discoveredFile.path, discoveredFile.fileInfo);
+        }
+
+        InvertedIndex[] invertedIndices = createInvertedIndices(termDictionaries);
+
+        for (InvertedIndex[] workerInvertedIndexArray : workerInvertedIndices) {
+            for (int j = 0; j < invertedIndices.length; j++) {
+                workerInvertedIndexArray[j].remapFileIndices(fileIndexMap);
+                invertedIndices[j].merge(workerInvertedIndexArray[j]);
+            }
+        }
+
+        Indexer.addPhaseNanos(options.getStatistics(), BuildPhase.POSTING_ACCUMULATION, System.nanoTime() - startTime);
+
+        return invertedIndices;
+    }
+
+    private static InvertedIndex[] createInvertedIndices(TermDictionary[] termDictionaries) {
+
+        InvertedIndex[] invertedIndices = new InvertedIndex[termDictionaries.length];
+
+        for (int j = 0; j < invertedIndices.length; j++) {
+            invertedIndices[j] = new InvertedIndex(termDictionaries[j]);
+        }
+
+        return invertedIndices;
+    }
+}
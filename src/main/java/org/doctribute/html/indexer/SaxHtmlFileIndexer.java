@@ -22,16 +22,23 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Objects;
+import org.doctribute.html.indexer.model.BuildPhase;
 import org.doctribute.html.indexer.model.ContentInfo;
 import org.doctribute.html.indexer.model.FileInfo;
-import org.doctribute.html.indexer.model.WordInfo;
+import org.doctribute.html.indexer.model.InvertedIndex;
+import org.doctribute.html.indexer.model.TermVector;
+import org.doctribute.html.indexer.util.BuildStatistics;
+import org.doctribute.html.indexer.util.CachingStemmer;
+import org.doctribute.html.indexer.util.IntIntHashMap;
+import org.doctribute.html.indexer.util.PositionCodec;
+import org.doctribute.html.indexer.util.StopwordsFilter;
+import org.doctribute.html.indexer.util.TermDictionary;
+import org.doctribute.html.indexer.util.TermVectorCache;
+import org.doctribute.html.indexer.util.Tokenizer;
 import org.tartarus.snowball.SnowballProgram;
+import org.xml.sax.InputSource;
 
 public class SaxHtmlFileIndexer extends SaxHtmlFileParser {
 
@@ -45,13 +52,52 @@ public class SaxHtmlFileIndexer extends SaxHtmlFileParser {
     private final static int SCORING_FOR_ITALIC = 3;
     private final static int SCORING_FOR_NORMAL_TEXT = 1;
 
-    private final SnowballProgram stemmer;
+    private final CachingStemmer stemmer;
     private final String stopwordsRegexPattern;
     private final String punctuationRegexPattern;
-    private final Map<String, String> indicesMap;
+    private final Tokenizer tokenizer;
+    private final InvertedIndex invertedIndex;
+    private final TermDictionary termDictionary;
+    private final Tokenizer.TokenHandler tokenHandler = this::addWord;
+    private final IntIntHashMap scoringMap = new IntIntHashMap();
+    private final List<SaxHtmlFileIndexer> secondaryIndexerList = new ArrayList<>();
+    private boolean wordsShared = false;
+    private boolean recordWords = false;
+    private String[] recordedWords = new String[0];
+    private int[] recordedScorings = new int[0];
+    private int recordedWordCount;
+    private int currentScoring;
+    private boolean streaming = false;
+    private boolean positions = false;
+    private int[] tokenTermIds = new int[256];
+    private long[] termPositions = new long[0];
+    private int[] positionBuffer = new int[0];
+    private int positionCount;
+    private TermVectorCache termVectorCache;
+    private BuildStatistics statistics;
+    private long tokenizationNanos;
+    private long stemmingNanos;
+    private long accumulationNanos;
+    private long forwardingNanos;
+    private int tokenCount;
     private int i = 0;
 
-    public SaxHtmlFileIndexer(SnowballProgram stemmer, String stopwordsRegexPattern, String punctuationRegexPattern, Map<String, String> indicesMap) {
+    public SaxHtmlFileIndexer(SnowballProgram stemmer, String stopwordsRegexPattern, String punctuationRegexPattern) {
+        this(stemmer, stopwordsRegexPattern, punctuationRegexPattern, new InvertedIndex(new TermDictionary()));
+    }
+
+    public SaxHtmlFileIndexer(SnowballProgram stemmer, String stopwordsRegexPattern, String punctuationRegexPattern, InvertedIndex invertedIndex) {
+        this(new CachingStemmer(stemmer), stopwordsRegexPattern, punctuationRegexPattern, invertedIndex);
+    }
+
+    public SaxHtmlFileIndexer(CachingStemmer stemmer, String stopwordsRegexPattern, String punctuationRegexPattern) {
+        this(stemmer, stopwordsRegexPattern, punctuationRegexPattern, new InvertedIndex(new TermDictionary()));
+    }
+
+    /**
+     * The terms are resolved by the dictionary of the given index, which can be shared by several indexers.
+     */
+    public SaxHtmlFileIndexer(CachingStemmer stemmer, String stopwordsRegexPattern, String punctuationRegexPattern, InvertedIndex invertedIndex) {
 
         super();
 
@@ -60,113 +106,479 @@ public class SaxHtmlFileIndexer extends SaxHtmlFileParser {
         System.setProperty("javax.xml.parsers.SAXParserFactory", "org.ccil.cowan.tagsoup.jaxp.SAXFactoryImpl");
 
         this.stemmer = stemmer;
-        this.stopwordsRegexPattern = stopwordsRegexPattern;
+        this.stopwordsRegexPattern = (stopwordsRegexPattern != null) ? stopwordsRegexPattern : "";
         this.punctuationRegexPattern = punctuationRegexPattern;
-        this.indicesMap = indicesMap;
+        this.tokenizer = new Tokenizer(punctuationRegexPattern, StopwordsFilter.compile(stopwordsRegexPattern));
+        this.invertedIndex = invertedIndex;
+        this.termDictionary = invertedIndex.getTermDictionary();
     }
 
     @Override
     public void extractData(Path path, FileInfo fileInfo, String contentIDRegexPattern) throws IOException {
+        extractData(path, i++, fileInfo, contentIDRegexPattern);
+    }
+
+    public void extractData(Path path, int fileIndex, FileInfo fileInfo, String contentIDRegexPattern) throws IOException {
+
+        if (isTermVectorCacheUsed()) {
+            addPostings(fileIndex, extractTermVector(path, fileInfo, contentIDRegexPattern));
+            return;
+        }
+
+        extractScorings(path, null, fileInfo, contentIDRegexPattern);
+
+        addPostings(fileIndex);
+
+        for (SaxHtmlFileIndexer secondaryIndexer : secondaryIndexerList) {
+            secondaryIndexer.extractData(this, fileIndex);
+        }
+    }
+
+    /**
+     * Indexes the content of the file just parsed by the primary indexer.
+     */
+    private void extractData(SaxHtmlFileIndexer primaryIndexer, int fileIndex) {
+
+        long startTime = (statistics != null) ? System.nanoTime() : 0;
+
+        if (wordsShared) {
+
+            for (int j = 0; j < primaryIndexer.recordedWordCount; j++) {
+                currentScoring = primaryIndexer.recordedScorings[j];
+                addWord(primaryIndexer.recordedWords[j]);
+            }
+
+        } else if (!primaryIndexer.streaming) {
+
+            for (ContentInfo contentInfo : primaryIndexer.contentInfoList) {
+                currentScoring = getScoring(contentInfo.getElementName());
+                tokenizer.tokenize(contentInfo.getContent(), tokenHandler);
+            }
+        }
+
+        // in the streaming mode the content has been already tokenized during the parse
+
+        if (statistics != null) {
+            tokenizationNanos += System.nanoTime() - startTime;
+            statistics.addPhaseNanos(BuildPhase.TOKENIZATION, tokenizationNanos - stemmingNanos - accumulationNanos);
+            statistics.addPhaseNanos(BuildPhase.STEMMING, stemmingNanos);
+            statistics.addPhaseNanos(BuildPhase.POSTING_ACCUMULATION, accumulationNanos);
+        }
+
+        addPostings(fileIndex);
+    }
+
+    private void addPostings(int fileIndex) {
+
+        long startTime = (statistics != null) ? System.nanoTime() : 0;
+
+        if (positions) {
+            addPostingsWithPositions(fileIndex);
+        } else {
+            scoringMap.forEach((termId, scoring) -> invertedIndex.add(termId, fileIndex, scoring));
+        }
+
+        if (statistics != null) {
+            statistics.addPhaseNanos(BuildPhase.POSTING_ACCUMULATION, System.nanoTime() - startTime);
+        }
+    }
+
+    private void addPostings(int fileIndex, TermVector termVector) {
+
+        long startTime = (statistics != null) ? System.nanoTime() : 0;
+
+        for (int j = 0; j < termVector.size(); j++) {
+            invertedIndex.add(termDictionary.getId(termVector.getTerm(j)), fileIndex, termVector.getScoring(j));
+        }
+
+        if (statistics != null) {
+            statistics.addPhaseNanos(BuildPhase.POSTING_ACCUMULATION, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Groups the positions recorded for the file tokens by the term, so every posting gets its own position block.
+     */
+    private void addPostingsWithPositions(int fileIndex) {
+
+        if (termPositions.length < positionCount) {
+            termPositions = new long[tokenTermIds.length];
+            positionBuffer = new int[tokenTermIds.length];
+        }
+
+        // the term ID goes to the upper bits, the position to the lower ones
+        for (int j = 0; j < positionCount; j++) {
+            termPositions[j] = ((long) tokenTermIds[j] << 32) | j;
+        }
+
+        Arrays.sort(termPositions, 0, positionCount);
+
+        long blockBytes = 0;
+        int start = 0;
+
+        while (start < positionCount) {
+
+            int termId = (int) (termPositions[start] >>> 32);
+            int end = start;
+
+            while (end < positionCount && (int) (termPositions[end] >>> 32) == termId) {
+                positionBuffer[end] = (int) termPositions[end];
+                end++;
+            }
+
+            byte[] positionBlock = PositionCodec.encode(positionBuffer, start, end);
+            invertedIndex.add(termId, fileIndex, scoringMap.get(termId), positionBlock);
+            blockBytes += positionBlock.length;
+
+            start = end;
+        }
+
+        if (statistics != null) {
+            statistics.recordPositions(positionCount, scoringMap.size(), blockBytes);
+        }
+    }
+
+    public TermVector extractTermVector(Path path, FileInfo fileInfo, String contentIDRegexPattern) throws IOException {
+
+        String key = null;
+
+        if (isTermVectorCacheUsed()) {
+
+            long startTime = (statistics != null) ? System.nanoTime() : 0;
+
+            key = termVectorCache.getKey(path, getSettingsFingerprint(contentIDRegexPattern));
+
+            TermVector termVector = termVectorCache.read(key, fileInfo);
+
+            if (statistics != null) {
+
+                statistics.recordTermVectorCacheLookup(termVector != null);
+
+                if (termVector != null) {
+                    // the cache lookup replaces the parse
+                    long nanos = System.nanoTime() - startTime;
+                    statistics.addPhaseNanos(BuildPhase.PARSING, nanos);
+                    statistics.recordFile(path, nanos, 0);
+                }
+            }
+
+            if (termVector != null) {
+                return termVector;
+            }
+        }
+
+        extractScorings(path, null, fileInfo, contentIDRegexPattern);
+
+        TermVector termVector = getTermVector();
+
+        if (key != null) {
+            termVectorCache.write(key, fileInfo.getTitle(), termVector);
+        }
+
+        return termVector;
+    }
+
+    /**
+     * Extracts the term vector of the document not stored in a file, e.g. kept in memory. The term vector cache and
+     * the statistics aren't applied.
+     */
+    public TermVector extractTermVector(InputSource inputSource, FileInfo fileInfo, String contentIDRegexPattern) throws IOException {
+
+        extractScorings(null, inputSource, fileInfo, contentIDRegexPattern);
+
+        return getTermVector();
+    }
+
+    private TermVector getTermVector() {
+
+        String[] terms = new String[scoringMap.size()];
+        int[] scorings = new int[scoringMap.size()];
+        int[] j = {0};
+
+        scoringMap.forEach((termId, scoring) -> {
+            terms[j[0]] = termDictionary.getTerm(termId);
+            scorings[j[0]] = scoring;
+            j[0]++;
+        });
+
+        return new TermVector(terms, scorings);
+    }
+
+    /**
+     * Returns the settings the extracted terms depend on. The stem cache and the input mode don't change the terms.
+     */
+    private String getSettingsFingerprint(String contentIDRegexPattern) {
+        return stemmer.getStemmer().getClass().getName() + "\n" + contentIDRegexPattern + "\n" + stopwordsRegexPattern + "\n" + punctuationRegexPattern + "\n" + streaming;
+    }
+
+    private boolean isTermVectorCacheUsed() {
+        return termVectorCache != null && !positions && secondaryIndexerList.isEmpty();
+    }
+
+    /**
+     * Collects the summed scorings of the file terms into the scoring map. The document is read from the input source
+     * if given, otherwise from the file.
+     */
+    private void extractScorings(Path path, InputSource inputSource, FileInfo fileInfo, String contentIDRegexPattern) throws IOException {
 
         this.fileInfo = fileInfo;
         this.contentIDRegexPattern = contentIDRegexPattern;
 
-        contentInfoList = new ArrayList<>();
+        startFile();
 
-        parseDocument(path);
+        for (SaxHtmlFileIndexer secondaryIndexer : secondaryIndexerList) {
+            secondaryIndexer.startFile();
+        }
 
-        Map<String, WordInfo> wordInfoMap = new HashMap<>();
+        long startTime = (statistics != null) ? System.nanoTime() : 0;
 
-        for (ContentInfo contentInfo : contentInfoList) {
+        if (streaming) {
 
-            int scoring = getScoring(contentInfo.getElementName());
+            contentInfoList = null;
 
-            String text = contentInfo.getContent().toLowerCase();
-            text = text.replaceAll(punctuationRegexPattern, " ");
-            text = text.replaceAll(stopwordsRegexPattern, "");
+            tokenizer.reset();
 
-            List<String> wordList = new ArrayList<>(Arrays.asList(text.split("\\s+")));
-            List<String> derivedWordList = new ArrayList<>();
-            List<String> obsoleteWordList = new ArrayList<>();
+            for (SaxHtmlFileIndexer secondaryIndexer : secondaryIndexerList) {
+                secondaryIndexer.tokenizer.reset();
+            }
 
-            for (String word : wordList) {
+            parseDocument(path, inputSource);
 
-                // keep derived words unique per single word
-                Collection<String> derivedWordCollection = new HashSet<>();
+        } else {
 
-                word = getWordWithoutEnclosedPunctuation(word, obsoleteWordList, derivedWordCollection);
+            contentInfoList = new ArrayList<>();
 
-                String[] chunks = word.split("[\\.:-]");
+            parseDocument(path, inputSource);
 
-                if (chunks.length > 1) {
-                    for (String chunk : chunks) {
-                        if (!chunk.isEmpty()) {
-                            derivedWordCollection.add(chunk);
-                        }
-                    }
-                }
+            long tokenizationStartTime = (statistics != null) ? System.nanoTime() : 0;
 
-                derivedWordList.addAll(derivedWordCollection);
+            for (ContentInfo contentInfo : contentInfoList) {
+                currentScoring = getScoring(contentInfo.getElementName());
+                tokenizer.tokenize(contentInfo.getContent(), tokenHandler);
             }
 
-            wordList.addAll(derivedWordList);
-            wordList.removeAll(obsoleteWordList);
+            if (statistics != null) {
+                tokenizationNanos = System.nanoTime() - tokenizationStartTime;
+            }
+        }
+
+        if (statistics != null && path != null) {
+            recordStatistics(path, System.nanoTime() - startTime);
+        }
+    }
+
+    private void parseDocument(Path path, InputSource inputSource) throws IOException {
 
-            for (String word : wordList) {
+        if (inputSource != null) {
+            parseDocument(inputSource);
+        } else {
+            parseDocument(path);
+        }
+    }
 
-                if (!word.isEmpty()) {
+    private void startFile() {
 
-                    String stemWord = getStemWord(word);
+        scoringMap.clear();
+        positionCount = 0;
+        recordedWordCount = 0;
 
-                    if (wordInfoMap.containsKey(stemWord)) {
-                        WordInfo wordInfo = wordInfoMap.get(stemWord);
-                        wordInfo.setScoring(wordInfo.getScoring() + scoring);
+        tokenizationNanos = 0;
+        stemmingNanos = 0;
+        accumulationNanos = 0;
+        forwardingNanos = 0;
+        tokenCount = 0;
+    }
+
+    @Override
+    protected void handleContent(char[] ch, int start, int length, String elementName) {
 
-                    } else {
-                        wordInfoMap.put(stemWord, new WordInfo(word, scoring));
-                    }
+        if (streaming) {
+            currentScoring = getScoring(elementName);
+
+            if (statistics != null) {
+                long startTime = System.nanoTime();
+                tokenizer.append(ch, start, length, tokenHandler);
+                tokenizationNanos += System.nanoTime() - startTime;
+
+            } else {
+                tokenizer.append(ch, start, length, tokenHandler);
+            }
+
+            for (SaxHtmlFileIndexer secondaryIndexer : secondaryIndexerList) {
+                if (!secondaryIndexer.wordsShared) {
+                    secondaryIndexer.currentScoring = currentScoring;
+                    forwardingNanos += secondaryIndexer.appendContent(ch, start, length);
                 }
             }
+
+        } else {
+            super.handleContent(ch, start, length, elementName);
         }
+    }
+
+    @Override
+    protected void handleContentBoundary() {
+
+        if (streaming) {
 
-        for (Entry<String, WordInfo> entry : wordInfoMap.entrySet()) {
+            if (statistics != null) {
+                long startTime = System.nanoTime();
+                tokenizer.finish(tokenHandler);
+                tokenizationNanos += System.nanoTime() - startTime;
 
-            String stemWord = entry.getKey();
-            String indice = i + "*" + entry.getValue().getScoring();
+            } else {
+                tokenizer.finish(tokenHandler);
+            }
 
-            if (indicesMap.containsKey(stemWord)) {
-                indice = indicesMap.get(stemWord) + "," + indice;
+            for (SaxHtmlFileIndexer secondaryIndexer : secondaryIndexerList) {
+                if (!secondaryIndexer.wordsShared) {
+                    forwardingNanos += secondaryIndexer.appendContent(null, 0, 0);
+                }
             }
+        }
+    }
+
+    /**
+     * Passes the content to the tokenizer of the secondary indexer, the null content completes the text. Returns the
+     * time taken if the statistics are collected.
+     */
+    private long appendContent(char[] ch, int start, int length) {
+
+        long startTime = (statistics != null) ? System.nanoTime() : 0;
+
+        if (ch != null) {
+            tokenizer.append(ch, start, length, tokenHandler);
+        } else {
+            tokenizer.finish(tokenHandler);
+        }
+
+        if (statistics != null) {
+            long nanos = System.nanoTime() - startTime;
+            tokenizationNanos += nanos;
+            return nanos;
+        }
 
-            indicesMap.put(stemWord, indice);
+        return 0;
+    }
+
+    private void addWord(String word) {
+
+        if (recordWords) {
+            recordWord(word);
+        }
+
+        if (statistics != null) {
+            long startTime = System.nanoTime();
+            String stemWord = stemmer.stem(word);
+            long stemmingEndTime = System.nanoTime();
+            addTerm(termDictionary.getId(stemWord));
+            stemmingNanos += stemmingEndTime - startTime;
+            accumulationNanos += System.nanoTime() - stemmingEndTime;
+            tokenCount++;
+
+        } else {
+            addTerm(termDictionary.getId(stemmer.stem(word)));
         }
+    }
+
+    private void recordWord(String word) {
 
-        i++;
+        if (recordedWordCount == recordedWords.length) {
+            int capacity = Math.max(256, 2 * recordedWordCount);
+            recordedWords = Arrays.copyOf(recordedWords, capacity);
+            recordedScorings = Arrays.copyOf(recordedScorings, capacity);
+        }
+
+        recordedWords[recordedWordCount] = word;
+        recordedScorings[recordedWordCount] = currentScoring;
+        recordedWordCount++;
     }
 
-    private String getWordWithoutEnclosedPunctuation(String word, List<String> obsoleteWordList, Collection<String> derivedWordCollection) {
+    private void addTerm(int termId) {
 
-        if (word.matches("^[\\.:-]+.*") || word.matches(".*[\\.:-]+$")) {
+        scoringMap.addTo(termId, currentScoring);
 
-            obsoleteWordList.add(word);
+        if (positions) {
 
-            while (word.matches("^[\\.:-]+.*") || word.matches(".*[\\.:-]+$")) {
-                word = word.replaceAll("^[\\.:-]+(.*)", "$1");
-                word = word.replaceAll("(.*)[\\.:-]+$", "$1");
+            if (positionCount == tokenTermIds.length) {
+                tokenTermIds = Arrays.copyOf(tokenTermIds, 2 * positionCount);
             }
 
-            derivedWordCollection.add(word);
+            tokenTermIds[positionCount++] = termId;
         }
+    }
 
-        return word;
+    /**
+     * In the streaming mode the text is tokenized directly in the SAX callbacks, so the text content is never
+     * buffered. Unlike in the default mode, words split by the parser (e.g. at character references) are joined.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
     }
 
-    private String getStemWord(String word) {
+    /**
+     * Passes the content parsed by this indexer also to the given one, typically using another stemmer, so every
+     * file is parsed just once. If both indexers remove the same stopwords, the words found by this indexer are passed
+     * on as they are, so the text is tokenized just once too. The secondary indexers aren't applied to term vectors.
+     */
+    public void addSecondaryIndexer(SaxHtmlFileIndexer secondaryIndexer) {
 
-        stemmer.setCurrent(word.trim().toLowerCase());
-        stemmer.stem();
+        secondaryIndexer.wordsShared = stopwordsRegexPattern.equals(secondaryIndexer.stopwordsRegexPattern)
+                && Objects.equals(punctuationRegexPattern, secondaryIndexer.punctuationRegexPattern);
+
+        if (secondaryIndexer.wordsShared) {
+            recordWords = true;
+        }
+
+        secondaryIndexerList.add(secondaryIndexer);
+    }
+
+    /**
+     * Sets whether the positions of the tokens are kept with the postings. Every token emitted by the tokenizer,
+     * including the chunks derived from a compound word, takes one position.
+     */
+    public void setPositions(boolean positions) {
+        this.positions = positions;
+    }
+
+    /**
+     * Sets the cache of the term vectors, so files already parsed with the same settings, e.g. by another build, aren't
+     * parsed again. Not applied with the positions or secondary indexers, as the cache holds neither.
+     */
+    public void setTermVectorCache(TermVectorCache termVectorCache) {
+        this.termVectorCache = termVectorCache;
+    }
+
+    /**
+     * Sets the collector of the build statistics. The timings are measured only if set.
+     */
+    public void setStatistics(BuildStatistics statistics) {
+
+        this.statistics = statistics;
+
+        if (statistics != null) {
+            statistics.registerStemmer(stemmer);
+        }
+    }
+
+    private void recordStatistics(Path path, long nanos) {
+
+        // the tokenization time measured so far includes the nested stemming and accumulation
+        long netTokenizationNanos = tokenizationNanos - stemmingNanos - accumulationNanos;
+
+        statistics.addPhaseNanos(BuildPhase.PARSING, nanos - tokenizationNanos - forwardingNanos);
+        statistics.addPhaseNanos(BuildPhase.TOKENIZATION, netTokenizationNanos);
+        statistics.addPhaseNanos(BuildPhase.STEMMING, stemmingNanos);
+        statistics.addPhaseNanos(BuildPhase.POSTING_ACCUMULATION, accumulationNanos);
+        statistics.recordFile(path, nanos, tokenCount);
+    }
+
+    public InvertedIndex getInvertedIndex() {
+        return invertedIndex;
+    }
 
-        return stemmer.getCurrent();
+    public CachingStemmer getStemmer() {
+        return stemmer;
     }
 
     private int getScoring(String elementName) {
@@ -18,25 +18,31 @@
  */
 package org.doctribute.html.indexer;
 
+import java.io.CharArrayReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.CharBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import org.doctribute.html.indexer.model.ContentInfo;
 import org.doctribute.html.indexer.model.FileInfo;
+import org.doctribute.html.indexer.model.InputMode;
+import org.doctribute.html.indexer.util.FileDecoder;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 
 public class SaxHtmlFileParser extends DefaultHandler {
 
+    private static SAXParserFactory parserFactory;
+
     protected FileInfo fileInfo;
     protected List<ContentInfo> contentInfoList;
     protected String contentIDRegexPattern;
@@ -44,6 +50,9 @@ public class SaxHtmlFileParser extends DefaultHandler {
     private final Stack<String> elementStack = new Stack<>();
     private boolean addContent = false;
     private int divCount = 0;
+    private XMLReader reader;
+    private InputMode inputMode = InputMode.STREAM;
+    private FileDecoder fileDecoder;
 
     public void extractData(Path path, FileInfo fileInfo, String contentIDRegexPattern) throws IOException {
 
@@ -57,28 +66,81 @@ public class SaxHtmlFileParser extends DefaultHandler {
 
     public void parseDocument(Path path) throws IOException {
 
-        SAXParserFactory parserFactory = SAXParserFactory.newInstance();
-
-        addContent = false;
-        divCount = 0;
-
-        try {
-            SAXParser parser = parserFactory.newSAXParser();
+        if (inputMode == InputMode.STREAM) {
 
             try (InputStream input = Files.newInputStream(path)) {
                 InputSource inputSource = new InputSource(input);
                 inputSource.setEncoding("UTF-8");
-                parser.parse(inputSource, this);
+                parseDocument(inputSource);
             }
 
+        } else {
+
+            if (fileDecoder == null) {
+                fileDecoder = new FileDecoder(inputMode == InputMode.MMAP);
+            }
+
+            CharBuffer content = fileDecoder.decode(path);
+
+            parseDocument(new InputSource(new CharArrayReader(content.array(), content.arrayOffset(), content.remaining())));
+        }
+    }
+
+    /**
+     * Parses the document not stored in a file, e.g. kept in memory.
+     */
+    public void parseDocument(InputSource inputSource) throws IOException {
+
+        addContent = false;
+        divCount = 0;
+        elementStack.clear();
+
+        try {
+            getReader().parse(inputSource);
+
         } catch (IOException | SAXException | ParserConfigurationException e) {
             throw new IOException(e);
         }
     }
 
+    public void setInputMode(InputMode inputMode) {
+
+        if (this.inputMode != inputMode) {
+            this.inputMode = inputMode;
+            this.fileDecoder = null;
+        }
+    }
+
+    /**
+     * The reader is created once and then reused for all documents parsed by this instance.
+     */
+    private XMLReader getReader() throws ParserConfigurationException, SAXException {
+
+        if (reader == null) {
+            reader = createReader();
+            reader.setContentHandler(this);
+            reader.setEntityResolver(this);
+            reader.setDTDHandler(this);
+            reader.setErrorHandler(this);
+        }
+
+        return reader;
+    }
+
+    private static synchronized XMLReader createReader() throws ParserConfigurationException, SAXException {
+
+        if (parserFactory == null) {
+            parserFactory = SAXParserFactory.newInstance();
+        }
+
+        return parserFactory.newSAXParser().getXMLReader();
+    }
+
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
 
+        handleContentBoundary();
+
         elementStack.add(qName);
 
         if ((qName.equalsIgnoreCase("meta"))) {
@@ -101,6 +163,8 @@ public class SaxHtmlFileParser extends DefaultHandler {
     @Override
     public void endElement(String uri, String localName, String qName) throws SAXException {
 
+        handleContentBoundary();
+
         elementStack.pop();
 
         if (qName.equalsIgnoreCase("div") && addContent) {
@@ -115,15 +179,30 @@ public class SaxHtmlFileParser extends DefaultHandler {
     public void characters(char[] ch, int start, int length) throws SAXException {
 
         if (addContent) {
+            handleContent(ch, start, length, elementStack.peek());
+        }
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        handleContentBoundary();
+    }
 
-            String text = new String(ch, start, length).replaceAll("\\s+", " ").trim();
+    protected void handleContent(char[] ch, int start, int length, String elementName) {
 
-            if (!text.isEmpty()) {
-                contentInfoList.add(new ContentInfo(text, elementStack.peek()));
-            }
+        String text = new String(ch, start, length).replaceAll("\\s+", " ").trim();
+
+        if (!text.isEmpty()) {
+            contentInfoList.add(new ContentInfo(text, elementName));
         }
     }
 
+    /**
+     * Called whenever the text might get split by an element, i.e. at every element start or end.
+     */
+    protected void handleContentBoundary() {
+    }
+
     @Override
     public void processingInstruction(String target, String data) throws SAXException {
     }
@@ -0,0 +1,511 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import org.doctribute.html.indexer.model.PostingList;
+import org.doctribute.html.indexer.model.SearchResult;
+import org.doctribute.html.indexer.util.CachingStemmer;
+import org.doctribute.html.indexer.util.CompactPostingCodec;
+import org.doctribute.html.indexer.util.PositionCodec;
+import org.doctribute.html.indexer.util.StopwordsFilter;
+import org.doctribute.html.indexer.util.Tokenizer;
+import org.tartarus.snowball.SnowballProgram;
+
+/**
+ * Searches the index on the server side. The query is split into terms the same way as the indexed text, so the
+ * stemmer, stopwords and punctuation have to match the ones used for the indexing. The engine is thread-safe.
+ */
+public class SearchEngine {
+
+    private final Map<String, PostingList> indicesMap;
+    private final String[] paths;
+    private final String[] titles;
+    private final boolean positions;
+    private final ThreadLocal<QueryParser> queryParser;
+
+    /**
+     * Holds the postings of an in-memory build. The paths and titles are addressed by the file indices.
+     */
+    public SearchEngine(Map<String, PostingList> indicesMap, String[] paths, String[] titles, SnowballProgram stemmer, String stopwordsRegexPattern, String punctuationRegexPattern) {
+
+        this.indicesMap = indicesMap;
+        this.paths = paths;
+        this.titles = titles;
+        this.positions = containsPositions(indicesMap);
+
+        Class<? extends SnowballProgram> stemmerClass = stemmer.getClass();
+        StopwordsFilter stopwordsFilter = StopwordsFilter.compile(stopwordsRegexPattern);
+
+        // neither the stemmer nor the tokenizer are thread-safe
+        this.queryParser = ThreadLocal.withInitial(() -> {
+            try {
+                return new QueryParser(new CachingStemmer(Indexer.createStemmer(stemmerClass)), new Tokenizer(punctuationRegexPattern, stopwordsFilter));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Loads the index files written into the given folder, both the text and the compact format, including the
+     * positions if written.
+     */
+    public static SearchEngine load(Path outputFolderPath, SnowballProgram stemmer, String stopwordsRegexPattern, String punctuationRegexPattern) throws IOException {
+
+        List<String> pathList = new ArrayList<>();
+        List<String> titleList = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(outputFolderPath.resolve(Indexer.FILE_INFO_LIST_NAME))) {
+
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+
+                int start = line.indexOf("] = \"");
+
+                if (line.startsWith("fil[\"") && start > 0 && line.endsWith("\";")) {
+
+                    String fileInfo = line.substring(start + 5, line.length() - 2);
+                    int separatorIndex = fileInfo.indexOf("@@@");
+
+                    pathList.add(fileInfo.substring(0, separatorIndex));
+                    titleList.add(Indexer.readFileInfoTitle(fileInfo.substring(separatorIndex + 3)));
+                }
+            }
+        }
+
+        boolean compact = Files.exists(outputFolderPath.resolve(IndexShardWriter.INDEX_DECODER_NAME));
+
+        Map<String, PostingList> indicesMap = new HashMap<>();
+
+        try (DirectoryStream<Path> shardPathStream = Files.newDirectoryStream(outputFolderPath, path -> path.getFileName().toString().matches("index-\\d+\\.js"))) {
+
+            for (Path shardPath : shardPathStream) {
+
+                try (BufferedReader reader = Files.newBufferedReader(shardPath)) {
+
+                    String line;
+
+                    while ((line = reader.readLine()) != null) {
+
+                        int separatorIndex = line.lastIndexOf("\"]=\"");
+
+                        if (line.startsWith("w[\"") && separatorIndex > 0 && line.endsWith("\";")) {
+
+                            String term = line.substring(3, separatorIndex);
+                            String postings = line.substring(separatorIndex + 4, line.length() - 2);
+
+                            indicesMap.put(term, compact ? CompactPostingCodec.decode(postings) : parsePostings(postings));
+                        }
+                    }
+                }
+            }
+        }
+
+        try (DirectoryStream<Path> positionsPathStream = Files.newDirectoryStream(outputFolderPath, path -> path.getFileName().toString().matches("positions-\\d+\\.js"))) {
+
+            for (Path positionsPath : positionsPathStream) {
+
+                try (BufferedReader reader = Files.newBufferedReader(positionsPath)) {
+
+                    String line;
+
+                    while ((line = reader.readLine()) != null) {
+
+                        int separatorIndex = line.lastIndexOf("\"]=\"");
+
+                        if (line.startsWith("p[\"") && separatorIndex > 0 && line.endsWith("\";")) {
+
+                            String term = line.substring(3, separatorIndex);
+                            PostingList postingList = indicesMap.get(term);
+
+                            if (postingList != null) {
+                                indicesMap.put(term, addPositions(postingList, line.substring(separatorIndex + 4, line.length() - 2)));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return new SearchEngine(indicesMap, pathList.toArray(new String[0]), titleList.toArray(new String[0]), stemmer, stopwordsRegexPattern, punctuationRegexPattern);
+    }
+
+    /**
+     * Returns the best results, the highest score first. If matchAll is set, only files containing all the query
+     * terms are returned. The score is the sum of the term scorings.
+     */
+    public List<SearchResult> search(String query, boolean matchAll, int maxResults) {
+
+        List<PostingList> postingListList = new ArrayList<>();
+
+        for (String term : queryParser.get().parse(query)) {
+
+            PostingList postingList = indicesMap.get(term);
+
+            if (postingList != null) {
+                postingListList.add(postingList);
+            } else if (matchAll) {
+                return new ArrayList<>();
+            }
+        }
+
+        if (postingListList.isEmpty() || maxResults <= 0) {
+            return new ArrayList<>();
+        }
+
+        // the score goes to the upper bits, the lower file index wins among equal scores
+        PriorityQueue<Long> resultQueue = new PriorityQueue<>(maxResults + 1);
+
+        if (matchAll) {
+            collectAll(postingListList, resultQueue, maxResults);
+        } else {
+            collectAny(postingListList, resultQueue, maxResults);
+        }
+
+        return toResultList(resultQueue);
+    }
+
+    private List<SearchResult> toResultList(PriorityQueue<Long> resultQueue) {
+
+        SearchResult[] results = new SearchResult[resultQueue.size()];
+
+        for (int i = results.length - 1; i >= 0; i--) {
+            long result = resultQueue.poll();
+            int fileIndex = (int) (0xFFFFFFFFL - (result & 0xFFFFFFFFL));
+            results[i] = new SearchResult(paths[fileIndex], titles[fileIndex], (int) (result >>> 32));
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Returns the best files containing the query terms next to each other in the query order, the highest score
+     * first. The score is the sum of the term scorings. The stopwords are skipped on both sides, so they don't break
+     * the adjacency.
+     */
+    public List<SearchResult> searchPhrase(String phrase, int maxResults) {
+
+        if (!positions) {
+            throw new IllegalStateException("The index holds no positions.");
+        }
+
+        List<String> termList = queryParser.get().parseSequence(phrase);
+
+        if (termList.isEmpty() || maxResults <= 0) {
+            return new ArrayList<>();
+        }
+
+        PostingList[] postingLists = new PostingList[termList.size()];
+        int shortestIndex = 0;
+
+        for (int k = 0; k < postingLists.length; k++) {
+
+            postingLists[k] = indicesMap.get(termList.get(k));
+
+            if (postingLists[k] == null) {
+                return new ArrayList<>();
+            }
+
+            if (postingLists[k].size() < postingLists[shortestIndex].size()) {
+                shortestIndex = k;
+            }
+        }
+
+        PriorityQueue<Long> resultQueue = new PriorityQueue<>(maxResults + 1);
+        PostingList shortestPostingList = postingLists[shortestIndex];
+        int[] cursors = new int[postingLists.length];
+
+        for (int i = 0; i < shortestPostingList.size(); i++) {
+
+            int fileIndex = shortestPostingList.getFileIndex(i);
+            boolean found = true;
+
+            for (int k = 0; k < postingLists.length && found; k++) {
+                cursors[k] = findFileIndex(postingLists[k], fileIndex, cursors[k]);
+                found = (cursors[k] < postingLists[k].size() && postingLists[k].getFileIndex(cursors[k]) == fileIndex);
+            }
+
+            if (found && containsPhrase(postingLists, cursors)) {
+                offer(resultQueue, fileIndex, getPhraseScore(postingLists, cursors), maxResults);
+            }
+        }
+
+        return toResultList(resultQueue);
+    }
+
+    public boolean hasPositions() {
+        return positions;
+    }
+
+    public int getFileCount() {
+        return paths.length;
+    }
+
+    public int getTermCount() {
+        return indicesMap.size();
+    }
+
+    /**
+     * Intersects the lists by looking up the files of the shortest list in the others.
+     */
+    private static void collectAll(List<PostingList> postingListList, PriorityQueue<Long> resultQueue, int maxResults) {
+
+        postingListList.sort((postingList1, postingList2) -> Integer.compare(postingList1.size(), postingList2.size()));
+
+        PostingList shortestPostingList = postingListList.get(0);
+        int[] positions = new int[postingListList.size()];
+
+        for (int i = 0; i < shortestPostingList.size(); i++) {
+
+            int fileIndex = shortestPostingList.getFileIndex(i);
+            long score = shortestPostingList.getScoring(i);
+
+            for (int j = 1; j < postingListList.size() && score >= 0; j++) {
+
+                PostingList postingList = postingListList.get(j);
+                positions[j] = findFileIndex(postingList, fileIndex, positions[j]);
+
+                if (positions[j] < postingList.size() && postingList.getFileIndex(positions[j]) == fileIndex) {
+                    score += postingList.getScoring(positions[j]);
+                } else {
+                    score = -1;
+                }
+            }
+
+            if (score >= 0) {
+                offer(resultQueue, fileIndex, score, maxResults);
+            }
+        }
+    }
+
+    /**
+     * Merges the lists sorted by the file index, summing the scorings of the same file.
+     */
+    private static void collectAny(List<PostingList> postingListList, PriorityQueue<Long> resultQueue, int maxResults) {
+
+        int[] positions = new int[postingListList.size()];
+
+        while (true) {
+
+            int fileIndex = Integer.MAX_VALUE;
+
+            for (int j = 0; j < postingListList.size(); j++) {
+                if (positions[j] < postingListList.get(j).size()) {
+                    fileIndex = Math.min(fileIndex, postingListList.get(j).getFileIndex(positions[j]));
+                }
+            }
+
+            if (fileIndex == Integer.MAX_VALUE) {
+                return;
+            }
+
+            long score = 0;
+
+            for (int j = 0; j < postingListList.size(); j++) {
+
+                PostingList postingList = postingListList.get(j);
+
+                if (positions[j] < postingList.size() && postingList.getFileIndex(positions[j]) == fileIndex) {
+                    score += postingList.getScoring(positions[j]);
+                    positions[j]++;
+                }
+            }
+
+            offer(resultQueue, fileIndex, score, maxResults);
+        }
+    }
+
+    /**
+     * Checks whether the terms of the matched postings follow each other somewhere in the file.
+     */
+    private static boolean containsPhrase(PostingList[] postingLists, int[] cursors) {
+
+        int[][] positions = new int[postingLists.length][];
+
+        for (int k = 0; k < postingLists.length; k++) {
+            positions[k] = PositionCodec.decode(postingLists[k].getPositionBlock(cursors[k]));
+        }
+
+        for (int position : positions[0]) {
+
+            boolean adjacent = true;
+
+            for (int k = 1; k < positions.length && adjacent; k++) {
+                adjacent = (Arrays.binarySearch(positions[k], position + k) >= 0);
+            }
+
+            if (adjacent) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Sums the scorings of the distinct phrase terms.
+     */
+    private static long getPhraseScore(PostingList[] postingLists, int[] cursors) {
+
+        long score = 0;
+
+        for (int k = 0; k < postingLists.length; k++) {
+
+            boolean repeated = false;
+
+            for (int j = 0; j < k && !repeated; j++) {
+                repeated = (postingLists[j] == postingLists[k]);
+            }
+
+            if (!repeated) {
+                score += postingLists[k].getScoring(cursors[k]);
+            }
+        }
+
+        return score;
+    }
+
+    private static void offer(PriorityQueue<Long> resultQueue, int fileIndex, long score, int maxResults) {
+
+        long result = (Math.min(score, Integer.MAX_VALUE) << 32) | (0xFFFFFFFFL - fileIndex);
+
+        if (resultQueue.size() < maxResults) {
+            resultQueue.add(result);
+        } else if (result > resultQueue.peek()) {
+            resultQueue.poll();
+            resultQueue.add(result);
+        }
+    }
+
+    /**
+     * Returns the position of the first posting with the file index not lower than the given one, starting at the
+     * given position. The search gallops first, so the lookups of ascending file indices stay cheap.
+     */
+    private static int findFileIndex(PostingList postingList, int fileIndex, int start) {
+
+        int step = 1;
+        int end = start;
+
+        while (end < postingList.size() && postingList.getFileIndex(end) < fileIndex) {
+            start = end + 1;
+            end += step;
+            step *= 2;
+        }
+
+        end = Math.min(end, postingList.size());
+
+        while (start < end) {
+
+            int middle = (start + end) >>> 1;
+
+            if (postingList.getFileIndex(middle) < fileIndex) {
+                start = middle + 1;
+            } else {
+                end = middle;
+            }
+        }
+
+        return start;
+    }
+
+    private static PostingList parsePostings(String postings) {
+
+        String[] items = postings.split(",");
+
+        PostingList postingList = new PostingList(items.length);
+
+        for (String item : items) {
+            int separatorIndex = item.indexOf('*');
+            postingList.add(Integer.parseInt(item.substring(0, separatorIndex)), Integer.parseInt(item.substring(separatorIndex + 1)));
+        }
+
+        return postingList;
+    }
+
+    private static PostingList addPositions(PostingList postingList, String encodedPositions) {
+
+        int[][] blocks = PositionCodec.decodeText(encodedPositions, postingList.size());
+
+        PostingList positionalPostingList = new PostingList(postingList.size());
+
+        for (int i = 0; i < postingList.size(); i++) {
+            positionalPostingList.add(postingList.getFileIndex(i), postingList.getScoring(i), PositionCodec.encode(blocks[i], 0, blocks[i].length));
+        }
+
+        return positionalPostingList;
+    }
+
+    private static boolean containsPositions(Map<String, PostingList> indicesMap) {
+
+        for (PostingList postingList : indicesMap.values()) {
+            if (postingList.hasPositions()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static class QueryParser {
+
+        private final CachingStemmer stemmer;
+        private final Tokenizer tokenizer;
+
+        QueryParser(CachingStemmer stemmer, Tokenizer tokenizer) {
+            this.stemmer = stemmer;
+            this.tokenizer = tokenizer;
+        }
+
+        Set<String> parse(String query) {
+
+            Set<String> termSet = new LinkedHashSet<>();
+
+            tokenizer.tokenize(query, word -> termSet.add(stemmer.stem(word)));
+
+            return termSet;
+        }
+
+        /**
+         * Returns all the terms in the query order, including the repeated ones.
+         */
+        List<String> parseSequence(String query) {
+
+            List<String> termList = new ArrayList<>();
+
+            tokenizer.tokenize(query, word -> termList.add(stemmer.stem(word)));
+
+            return termList;
+        }
+    }
+}
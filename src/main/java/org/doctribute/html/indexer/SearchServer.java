@@ -0,0 +1,279 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.doctribute.html.indexer.model.SearchResult;
+import org.doctribute.html.indexer.util.JsonStrings;
+import org.doctribute.html.indexer.util.PunctuationParser;
+import org.doctribute.html.indexer.util.StopwordsParser;
+import org.tartarus.snowball.SnowballProgram;
+
+/**
+ * Serves the search results as JSON, e.g. <code>GET /search?q=xslt+parameter&amp;op=and&amp;limit=10</code>. The
+ * <code>op=phrase</code> queries require the index built with the positions.
+ */
+public class SearchServer {
+
+    private static final String PARAM_INDEX_FOLDER_PATH = "-indexFolderPath";
+    private static final String PARAM_STEMMER_CLASS_NAME = "-stemmerClassName";
+    private static final String PARAM_STOPWORDS_FILE_PATH = "-stopwordsFilePath";
+    private static final String PARAM_PUNCTUATION_FILE_PATH = "-punctuationFilePath";
+    private static final String PARAM_HOST = "-host";
+    private static final String PARAM_PORT = "-port";
+    private static final String PARAM_THREADS = "-threads";
+
+    private static final String SEARCH_CONTEXT_PATH = "/search";
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_RESULT_COUNT = 10;
+    private static final int MAX_RESULT_COUNT = 1000;
+
+    private final SearchEngine searchEngine;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public SearchServer(SearchEngine searchEngine, InetSocketAddress address, int threadCount) throws IOException {
+
+        this.searchEngine = searchEngine;
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newFixedThreadPool(threadCount);
+
+        server.createContext(SEARCH_CONTEXT_PATH, this::handleSearch);
+        server.setExecutor(executor);
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        Map<String, String> passedValuesMap = new HashMap<>();
+
+        for (String arg : args) {
+            int index = arg.indexOf(":");
+            if (index > 0 && index < arg.length() - 1) {
+                passedValuesMap.put(arg.substring(0, index), arg.substring(index + 1));
+            }
+        }
+
+        if (passedValuesMap.containsKey(PARAM_INDEX_FOLDER_PATH) && passedValuesMap.containsKey(PARAM_STEMMER_CLASS_NAME)) {
+
+            SnowballProgram stemmer;
+
+            try {
+                stemmer = Class.forName(passedValuesMap.get(PARAM_STEMMER_CLASS_NAME)).asSubclass(SnowballProgram.class).newInstance();
+
+            } catch (ClassNotFoundException | ClassCastException | IllegalAccessException | InstantiationException e) {
+                throw new IOException("The stemmer couldn't be initialized.", e);
+            }
+
+            String stopwordsRegexPattern = "";
+
+            if (passedValuesMap.containsKey(PARAM_STOPWORDS_FILE_PATH)) {
+                stopwordsRegexPattern = StopwordsParser.getStopwordsRegexPattern(Paths.get(passedValuesMap.get(PARAM_STOPWORDS_FILE_PATH)));
+            }
+
+            String punctuationRegexPattern = Indexer.DEFAULT_PUNCTUATION_REGEX_PATTERN;
+
+            if (passedValuesMap.containsKey(PARAM_PUNCTUATION_FILE_PATH)) {
+                punctuationRegexPattern = PunctuationParser.getPunctuationRegexPattern(Paths.get(passedValuesMap.get(PARAM_PUNCTUATION_FILE_PATH)));
+            }
+
+            int port = getInt(passedValuesMap, PARAM_PORT, DEFAULT_PORT);
+            int threadCount = getInt(passedValuesMap, PARAM_THREADS, Runtime.getRuntime().availableProcessors());
+
+            Path indexFolderPath = Paths.get(passedValuesMap.get(PARAM_INDEX_FOLDER_PATH));
+
+            long startTime = System.currentTimeMillis();
+
+            SearchEngine searchEngine = SearchEngine.load(indexFolderPath, stemmer, stopwordsRegexPattern, punctuationRegexPattern);
+
+            System.out.println("Loaded " + searchEngine.getTermCount() + " terms of " + searchEngine.getFileCount() + " files in " + (System.currentTimeMillis() - startTime) + " ms.");
+
+            // only local clients are served unless the host is given, e.g. 0.0.0.0 for all the interfaces
+            InetSocketAddress address = passedValuesMap.containsKey(PARAM_HOST)
+                    ? new InetSocketAddress(passedValuesMap.get(PARAM_HOST), port)
+                    : new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+
+            if (address.isUnresolved()) {
+                throw new IOException("The host " + address.getHostString() + " couldn't be resolved.");
+            }
+
+            new SearchServer(searchEngine, address, threadCount).start();
+
+            System.out.println("Listening on http://" + address.getHostString() + ":" + port + SEARCH_CONTEXT_PATH + "?q=");
+
+        } else {
+
+            System.out.println("Specify at least:\n"
+                    + "- the directory containing the index files (indexFolderPath)\n"
+                    + "- the stemmer class name (stemmerClassName)\n\n"
+                    + "Usage: java -cp indexer.jar org.doctribute.html.indexer.SearchServer \n"
+                    + "         -indexFolderPath:output/html/search \n"
+                    + "         -stemmerClassName:org.tartarus.snowball.ext.EnglishStemmer \n"
+                    + "        [-stopwordsFilePath:search/stopwords.js] \n"
+                    + "        [-punctuationFilePath:search/punctuation.js] \n"
+                    + "        [-host:localhost] \n"
+                    + "        [-port:8080] \n"
+                    + "        [-threads:4]"
+            );
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleSearch(HttpExchange exchange) throws IOException {
+
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "{\"error\": \"Only GET is supported.\"}");
+                return;
+            }
+
+            Map<String, String> parameterMap = getQueryParameters(exchange.getRequestURI().getRawQuery());
+
+            String query = parameterMap.getOrDefault("q", "");
+            String operator = parameterMap.getOrDefault("op", "and").toLowerCase();
+
+            if (!operator.equals("and") && !operator.equals("or") && !operator.equals("phrase")) {
+                sendResponse(exchange, 400, "{\"error\": \"The op value must be one of: and, or, phrase.\"}");
+                return;
+            }
+
+            if (operator.equals("phrase") && !searchEngine.hasPositions()) {
+                sendResponse(exchange, 400, "{\"error\": \"The index holds no positions.\"}");
+                return;
+            }
+
+            int maxResults = DEFAULT_RESULT_COUNT;
+
+            if (parameterMap.containsKey("limit")) {
+                try {
+                    maxResults = Integer.parseInt(parameterMap.get("limit"));
+                } catch (NumberFormatException e) {
+                    maxResults = 0;
+                }
+
+                if (maxResults < 1) {
+                    sendResponse(exchange, 400, "{\"error\": \"The limit value must be a positive integer.\"}");
+                    return;
+                }
+
+                maxResults = Math.min(maxResults, MAX_RESULT_COUNT);
+            }
+
+            long startTime = System.nanoTime();
+
+            List<SearchResult> resultList;
+
+            if (operator.equals("phrase")) {
+                resultList = searchEngine.searchPhrase(query, maxResults);
+            } else {
+                resultList = searchEngine.search(query, operator.equals("and"), maxResults);
+            }
+
+            long elapsedMicros = (System.nanoTime() - startTime) / 1000;
+
+            StringBuilder builder = new StringBuilder();
+            builder.append("{\"query\": ").append(JsonStrings.quote(query));
+            builder.append(", \"op\": ").append(JsonStrings.quote(operator));
+            builder.append(", \"timeMicros\": ").append(elapsedMicros);
+            builder.append(", \"results\": [");
+
+            for (int i = 0; i < resultList.size(); i++) {
+                SearchResult result = resultList.get(i);
+                builder.append((i > 0) ? ",\n  " : "\n  ");
+                builder.append("{\"path\": ").append(JsonStrings.quote(result.getPath()));
+                builder.append(", \"title\": ").append(JsonStrings.quote(result.getTitle()));
+                builder.append(", \"score\": ").append(result.getScore()).append('}');
+            }
+
+            builder.append(resultList.isEmpty() ? "]}\n" : "\n]}\n");
+
+            sendResponse(exchange, 200, builder.toString());
+
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sendResponse(HttpExchange exchange, int status, String body) throws IOException {
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private static Map<String, String> getQueryParameters(String rawQuery) throws UnsupportedEncodingException {
+
+        Map<String, String> parameterMap = new HashMap<>();
+
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                int index = parameter.indexOf('=');
+                if (index > 0) {
+                    parameterMap.put(URLDecoder.decode(parameter.substring(0, index), "UTF-8"), URLDecoder.decode(parameter.substring(index + 1), "UTF-8"));
+                }
+            }
+        }
+
+        return parameterMap;
+    }
+
+    private static int getInt(Map<String, String> passedValuesMap, String paramName, int defaultValue) throws IOException {
+
+        if (!passedValuesMap.containsKey(paramName)) {
+            return defaultValue;
+        }
+
+        try {
+            int value = Integer.parseInt(passedValuesMap.get(paramName));
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+        }
+
+        throw new IOException("The " + paramName.substring(1) + " value must be a positive integer.");
+    }
+}
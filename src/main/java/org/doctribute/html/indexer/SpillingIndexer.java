@@ -0,0 +1,248 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.doctribute.html.indexer.model.BuildPhase;
+import org.doctribute.html.indexer.model.FileInfo;
+import org.doctribute.html.indexer.model.IndexerOptions;
+import org.doctribute.html.indexer.model.InvertedIndex;
+import org.doctribute.html.indexer.model.PostingList;
+import org.doctribute.html.indexer.model.TermVector;
+import org.doctribute.html.indexer.util.CachingStemmer;
+import org.doctribute.html.indexer.util.GzipCompressor;
+import org.doctribute.html.indexer.util.PostingRunFile;
+import org.doctribute.html.indexer.util.TermDictionary;
+import org.tartarus.snowball.SnowballProgram;
+
+/**
+ * Builds the index within a memory budget. Whenever the postings collected by a worker reach its share of the
+ * budget, they are sorted and flushed into a run file. At the end, the runs are merged term by term straight into
+ * the index files, so only the postings of a single term are kept in memory during the merge.
+ */
+class SpillingIndexer {
+
+    private static final String RUN_FOLDER_PREFIX = ".runs";
+
+    // rough heap usage of a new map entry (key, node, posting list with initial arrays) and of a single posting
+    private static final int TERM_ENTRY_SIZE = 170;
+    private static final int POSTING_SIZE = 12;
+
+    static void execute(Path sourceFolderPath, String contentIDRegexPattern, SnowballProgram stemmer, String stopwordsRegexPattern, String punctuationRegexPattern, IndexerOptions options) throws IOException {
+
+        List<Path> htmlPathList = new ArrayList<>(Indexer.getHtmlPathCollection(sourceFolderPath, options.getStatistics()));
+
+        if (htmlPathList.isEmpty()) {
+            return;
+        }
+
+        Collections.sort(htmlPathList);
+
+        Map<Path, FileInfo> fileInfoMap = new LinkedHashMap<>();
+
+        for (Path htmlPath : htmlPathList) {
+            fileInfoMap.put(htmlPath, new FileInfo());
+        }
+
+        Path outputFolderPath = sourceFolderPath.resolve(Indexer.OUTPUT_FOLDER_NAME);
+
+        if (Files.notExists(outputFolderPath)) {
+            Files.createDirectories(outputFolderPath);
+        }
+
+        Path runFolderPath = Files.createTempDirectory(outputFolderPath, RUN_FOLDER_PREFIX);
+
+        try {
+            List<Path> runPathList = extractRuns(htmlPathList, fileInfoMap, runFolderPath, contentIDRegexPattern, stemmer, stopwordsRegexPattern, punctuationRegexPattern, options);
+
+            if (!runPathList.isEmpty()) {
+
+                long startTime = System.nanoTime();
+
+                try (GzipCompressor compressor = Indexer.createCompressor(options)) {
+
+                    Indexer.writeFileInfoList(sourceFolderPath, outputFolderPath.resolve(Indexer.FILE_INFO_LIST_NAME), fileInfoMap, false, compressor);
+
+                    writeIndices(runPathList, new int[runPathList.size()], fileInfoMap.size(), outputFolderPath, options, compressor);
+                }
+
+                // the run merging is accounted as writing
+                Indexer.addPhaseNanos(options.getStatistics(), BuildPhase.WRITING, System.nanoTime() - startTime);
+            }
+
+        } finally {
+            deleteRunFolder(runFolderPath);
+        }
+    }
+
+    /**
+     * Merges the runs straight into the index files. The file indices of every run are shifted by the offset at the
+     * same position. If the compressor is given, the compressed copies of the files are written as well.
+     */
+    static void writeIndices(List<Path> runPathList, int[] fileIndexOffsets, int fileCount, Path outputFolderPath, IndexerOptions options, GzipCompressor compressor) throws IOException {
+
+        // the shards are balanced by their size, so the total size is computed in the first pass
+        long[] totalLength = {0};
+
+        IndexPruner sizingPruner = options.isPruning() ? new IndexPruner(options, fileCount) : null;
+
+        PostingRunFile.merge(runPathList, fileIndexOffsets, (term, postingList) -> {
+            PostingList prunedPostingList = (sizingPruner != null) ? sizingPruner.prune(term, postingList) : postingList;
+            if (prunedPostingList != null) {
+                totalLength[0] += IndexShardWriter.getLineLength(term, prunedPostingList, IndexShardWriter.encodePostings(prunedPostingList, options.getIndexFormat()));
+            }
+        });
+
+        IndexPruner pruner = options.isPruning() ? new IndexPruner(options, fileCount) : null;
+
+        OutputSink outputSink = new FolderOutputSink(outputFolderPath, false, compressor);
+        AutocompleteWriter autocompleteWriter = (options.getAutocompleteSize() > 0) ? new AutocompleteWriter(outputSink, options.getAutocompleteSize()) : null;
+
+        try (IndexShardWriter writer = new IndexShardWriter(outputSink, options, totalLength[0])) {
+            PostingRunFile.merge(runPathList, fileIndexOffsets, (term, postingList) -> {
+                PostingList prunedPostingList = (pruner != null) ? pruner.prune(term, postingList) : postingList;
+                if (prunedPostingList != null) {
+                    writer.write(term, prunedPostingList, IndexShardWriter.encodePostings(prunedPostingList, options.getIndexFormat()));
+                    if (autocompleteWriter != null) {
+                        autocompleteWriter.add(term, prunedPostingList);
+                    }
+                }
+            });
+        }
+
+        if (pruner != null) {
+            pruner.record(options.getStatistics());
+        }
+
+        if (autocompleteWriter != null) {
+            autocompleteWriter.close();
+        } else {
+            AutocompleteWriter.delete(outputSink);
+        }
+    }
+
+    private static List<Path> extractRuns(List<Path> htmlPathList, Map<Path, FileInfo> fileInfoMap, Path runFolderPath, String contentIDRegexPattern, SnowballProgram stemmer, String stopwordsRegexPattern, String punctuationRegexPattern, IndexerOptions options) throws IOException {
+
+        AtomicInteger nextFileIndex = new AtomicInteger();
+        AtomicInteger nextRunIndex = new AtomicInteger();
+
+        int workerCount = Math.min(options.getThreadCount(), htmlPathList.size());
+
+        long workerBudget = options.getMaxHeapForIndexMB() * 1024L * 1024L / workerCount;
+
+        // the workers share the dictionary, so every term string is kept only once
+        TermDictionary termDictionary = new TermDictionary();
+
+        List<Callable<List<Path>>> workerList = new ArrayList<>();
+
+        for (int i = 0; i < workerCount; i++) {
+
+            CachingStemmer workerStemmer = Indexer.createCachingStemmer((i == 0) ? stemmer : Indexer.createStemmer(stemmer.getClass()), options);
+
+            workerList.add(() -> {
+
+                SaxHtmlFileIndexer indexer = new SaxHtmlFileIndexer(workerStemmer, stopwordsRegexPattern, punctuationRegexPattern, new InvertedIndex(termDictionary));
+                indexer.setStreaming(options.isStreaming());
+                indexer.setInputMode(options.getInputMode());
+                indexer.setTermVectorCache(options.getTermVectorCache());
+                indexer.setStatistics(options.getStatistics());
+
+                List<Path> runPathList = new ArrayList<>();
+
+                Map<String, PostingList> indicesMap = new HashMap<>();
+                long estimatedSize = 0;
+
+                int fileIndex;
+
+                while ((fileIndex = nextFileIndex.getAndIncrement()) < htmlPathList.size()) {
+
+                    Path htmlPath = htmlPathList.get(fileIndex);
+
+                    TermVector termVector = indexer.extractTermVector(htmlPath, fileInfoMap.get(htmlPath), contentIDRegexPattern);
+
+                    for (int j = 0; j < termVector.size(); j++) {
+
+                        String term = termVector.getTerm(j);
+                        PostingList postingList = indicesMap.get(term);
+
+                        if (postingList == null) {
+                            postingList = new PostingList();
+                            indicesMap.put(term, postingList);
+                            estimatedSize += TERM_ENTRY_SIZE + 2 * term.length();
+                        }
+
+                        postingList.add(fileIndex, termVector.getScoring(j));
+                        estimatedSize += POSTING_SIZE;
+                    }
+
+                    if (estimatedSize >= workerBudget) {
+                        runPathList.add(writeRun(runFolderPath, nextRunIndex.getAndIncrement(), indicesMap));
+                        indicesMap = new HashMap<>();
+                        estimatedSize = 0;
+                    }
+                }
+
+                if (!indicesMap.isEmpty()) {
+                    runPathList.add(writeRun(runFolderPath, nextRunIndex.getAndIncrement(), indicesMap));
+                }
+
+                return runPathList;
+            });
+        }
+
+        List<Path> runPathList = new ArrayList<>();
+
+        for (List<Path> workerRunPathList : Indexer.runWorkers(workerList)) {
+            runPathList.addAll(workerRunPathList);
+        }
+
+        return runPathList;
+    }
+
+    private static void deleteRunFolder(Path runFolderPath) throws IOException {
+
+        try (DirectoryStream<Path> runPathStream = Files.newDirectoryStream(runFolderPath)) {
+            for (Path runPath : runPathStream) {
+                Files.delete(runPath);
+            }
+        }
+
+        Files.delete(runFolderPath);
+    }
+
+    private static Path writeRun(Path runFolderPath, int runIndex, Map<String, PostingList> indicesMap) throws IOException {
+
+        Path runPath = runFolderPath.resolve("run-" + runIndex);
+
+        PostingRunFile.write(runPath, indicesMap);
+
+        return runPath;
+    }
+}
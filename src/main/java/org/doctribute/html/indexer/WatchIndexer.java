@@ -0,0 +1,441 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.doctribute.html.indexer.model.FileInfo;
+import org.doctribute.html.indexer.model.IndexerOptions;
+import org.doctribute.html.indexer.model.PostingList;
+import org.doctribute.html.indexer.model.TermVector;
+import org.doctribute.html.indexer.util.BuildStatistics;
+import org.doctribute.html.indexer.util.CachingStemmer;
+import org.doctribute.html.indexer.util.GzipCompressor;
+import org.tartarus.snowball.SnowballProgram;
+
+/**
+ * Keeps the term vectors and postings of all the files in memory and updates them whenever HTML files in the source
+ * folder change. Bursts of changes are collected until no change comes within the debounce delay. Only the output
+ * files whose content has changed are rewritten.
+ * <p>
+ * Files keep their indices; indices of deleted files are reused by the new ones, and if there are fewer new files,
+ * the files with the highest indices are moved into the free slots.
+ */
+class WatchIndexer {
+
+    private final Path sourceFolderPath;
+    private final Path outputFolderPath;
+    private final String contentIDRegexPattern;
+    private final SnowballProgram stemmer;
+    private final String stopwordsRegexPattern;
+    private final String punctuationRegexPattern;
+    private final IndexerOptions options;
+    private final SaxHtmlFileIndexer indexer;
+
+    private final List<Path> htmlPathList = new ArrayList<>();
+    private final List<FileInfo> fileInfoList = new ArrayList<>();
+    private final List<TermVector> termVectorList = new ArrayList<>();
+    private final Map<Path, Integer> fileIndexMap = new HashMap<>();
+    private final Map<String, PostingList> indicesMap = new HashMap<>();
+    private final Map<WatchKey, Path> folderPathMap = new HashMap<>();
+
+    private WatchService watchService;
+
+    private WatchIndexer(Path sourceFolderPath, String contentIDRegexPattern, SnowballProgram stemmer, String stopwordsRegexPattern, String punctuationRegexPattern, IndexerOptions options) throws IOException {
+
+        this.sourceFolderPath = sourceFolderPath.toAbsolutePath().normalize();
+        this.outputFolderPath = this.sourceFolderPath.resolve(Indexer.OUTPUT_FOLDER_NAME);
+        this.contentIDRegexPattern = contentIDRegexPattern;
+        this.stemmer = stemmer;
+        this.stopwordsRegexPattern = stopwordsRegexPattern;
+        this.punctuationRegexPattern = punctuationRegexPattern;
+        this.options = options;
+
+        this.indexer = new SaxHtmlFileIndexer(Indexer.createCachingStemmer(stemmer, options), stopwordsRegexPattern, punctuationRegexPattern);
+        this.indexer.setStreaming(options.isStreaming());
+        this.indexer.setInputMode(options.getInputMode());
+    }
+
+    /**
+     * Builds the index and then keeps updating it until the thread is interrupted.
+     */
+    static void execute(Path sourceFolderPath, String contentIDRegexPattern, SnowballProgram stemmer, String stopwordsRegexPattern, String punctuationRegexPattern, IndexerOptions options) throws IOException {
+
+        WatchIndexer watchIndexer = new WatchIndexer(sourceFolderPath, contentIDRegexPattern, stemmer, stopwordsRegexPattern, punctuationRegexPattern, options);
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+
+            watchIndexer.watchService = watchService;
+            watchIndexer.registerFolders(watchIndexer.sourceFolderPath);
+            watchIndexer.build();
+
+            System.out.println("Watching " + watchIndexer.sourceFolderPath + " for changes.");
+
+            watchIndexer.watch();
+
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void build() throws IOException {
+
+        List<Path> pathList = new ArrayList<>(Indexer.getHtmlPathCollection(sourceFolderPath));
+        pathList.removeIf(this::isOutputPath);
+        Collections.sort(pathList);
+
+        TermVector[] termVectors = new TermVector[pathList.size()];
+        FileInfo[] fileInfos = new FileInfo[pathList.size()];
+
+        extractTermVectors(pathList, termVectors, fileInfos);
+
+        for (int i = 0; i < pathList.size(); i++) {
+
+            htmlPathList.add(pathList.get(i));
+            fileInfoList.add(fileInfos[i]);
+            termVectorList.add(termVectors[i]);
+            fileIndexMap.put(pathList.get(i), i);
+
+            for (int j = 0; j < termVectors[i].size(); j++) {
+                indicesMap.computeIfAbsent(termVectors[i].getTerm(j), k -> new PostingList()).add(i, termVectors[i].getScoring(j));
+            }
+        }
+
+        writeOutputs();
+    }
+
+    private void extractTermVectors(List<Path> pathList, TermVector[] termVectors, FileInfo[] fileInfos) throws IOException {
+
+        AtomicInteger nextIndex = new AtomicInteger();
+
+        int workerCount = Math.max(1, Math.min(options.getThreadCount(), pathList.size()));
+
+        List<Callable<Void>> workerList = new ArrayList<>();
+
+        for (int i = 0; i < workerCount; i++) {
+
+            boolean firstWorker = (i == 0);
+            CachingStemmer workerStemmer = firstWorker ? null : Indexer.createCachingStemmer(Indexer.createStemmer(stemmer.getClass()), options);
+
+            workerList.add(() -> {
+
+                SaxHtmlFileIndexer workerIndexer = indexer;
+
+                // the first worker uses the indexer kept for updates
+                if (!firstWorker) {
+                    workerIndexer = new SaxHtmlFileIndexer(workerStemmer, stopwordsRegexPattern, punctuationRegexPattern);
+                    workerIndexer.setStreaming(options.isStreaming());
+                    workerIndexer.setInputMode(options.getInputMode());
+                }
+
+                int index;
+
+                while ((index = nextIndex.getAndIncrement()) < pathList.size()) {
+                    fileInfos[index] = new FileInfo();
+                    termVectors[index] = extractTermVector(workerIndexer, pathList.get(index), fileInfos[index]);
+                }
+
+                return null;
+            });
+        }
+
+        Indexer.runWorkers(workerList);
+    }
+
+    /**
+     * The term vector holds the terms, so the dictionary is cleared to release the terms of edited or deleted content.
+     */
+    private TermVector extractTermVector(SaxHtmlFileIndexer indexer, Path path, FileInfo fileInfo) throws IOException {
+
+        try {
+            return indexer.extractTermVector(path, fileInfo, contentIDRegexPattern);
+        } finally {
+            indexer.getInvertedIndex().getTermDictionary().clear();
+        }
+    }
+
+    private void watch() throws IOException, InterruptedException {
+
+        while (true) {
+
+            Set<Path> changedPathSet = new HashSet<>();
+
+            boolean overflow = collectChanges(watchService.take(), changedPathSet);
+
+            WatchKey watchKey;
+
+            while ((watchKey = watchService.poll(options.getWatchDebounceMillis(), TimeUnit.MILLISECONDS)) != null) {
+                overflow |= collectChanges(watchKey, changedPathSet);
+            }
+
+            long startTime = System.currentTimeMillis();
+
+            int changedFileCount = update(changedPathSet, overflow);
+
+            if (changedFileCount > 0) {
+                System.out.println("Updated " + changedFileCount + " file(s) in " + (System.currentTimeMillis() - startTime) + " ms.");
+            }
+        }
+    }
+
+    /**
+     * Adds the paths of the watch key events and returns true if some events have been lost.
+     */
+    private boolean collectChanges(WatchKey watchKey, Set<Path> changedPathSet) {
+
+        boolean overflow = false;
+
+        Path folderPath = folderPathMap.get(watchKey);
+
+        for (WatchEvent<?> event : watchKey.pollEvents()) {
+
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+
+            } else if (folderPath != null) {
+
+                Path path = folderPath.resolve((Path) event.context());
+
+                if (!isOutputPath(path)) {
+                    changedPathSet.add(path);
+                }
+            }
+        }
+
+        if (!watchKey.reset()) {
+            folderPathMap.remove(watchKey);
+        }
+
+        return overflow;
+    }
+
+    private int update(Set<Path> changedPathSet, boolean overflow) throws IOException {
+
+        Set<Path> candidatePathSet = new HashSet<>();
+
+        if (overflow) {
+            registerFolders(sourceFolderPath);
+            candidatePathSet.addAll(Indexer.getHtmlPathCollection(sourceFolderPath));
+            candidatePathSet.addAll(htmlPathList);
+        }
+
+        for (Path path : changedPathSet) {
+
+            if (Files.isDirectory(path)) {
+                // the content of a new folder might have been created before it has been registered
+                registerFolders(path);
+                candidatePathSet.addAll(Indexer.getHtmlPathCollection(path));
+
+            } else if (Files.exists(path) || fileIndexMap.containsKey(path)) {
+                candidatePathSet.add(path);
+
+            } else {
+                // possibly a deleted folder
+                for (Path htmlPath : htmlPathList) {
+                    if (htmlPath.startsWith(path)) {
+                        candidatePathSet.add(htmlPath);
+                    }
+                }
+            }
+        }
+
+        TreeSet<Path> modifiedPathSet = new TreeSet<>();
+        TreeSet<Integer> freeFileIndexSet = new TreeSet<>();
+
+        for (Path path : candidatePathSet) {
+
+            if (isOutputPath(path) || !path.toString().endsWith(".html")) {
+                continue;
+            }
+
+            Integer fileIndex = fileIndexMap.get(path);
+
+            if (Files.isRegularFile(path)) {
+                modifiedPathSet.add(path);
+
+            } else if (fileIndex != null) {
+                removePostings(fileIndex);
+                fileIndexMap.remove(path);
+                htmlPathList.set(fileIndex, null);
+                freeFileIndexSet.add(fileIndex);
+            }
+        }
+
+        int changedFileCount = modifiedPathSet.size() + freeFileIndexSet.size();
+
+        if (changedFileCount == 0) {
+            return 0;
+        }
+
+        for (Path path : modifiedPathSet) {
+
+            FileInfo fileInfo = new FileInfo();
+            TermVector termVector;
+
+            try {
+                termVector = extractTermVector(indexer, path, fileInfo);
+            } catch (IOException e) {
+                System.err.println("The file " + path + " couldn't be indexed: " + e.getMessage());
+                continue;
+            }
+
+            Integer fileIndex = fileIndexMap.get(path);
+
+            if (fileIndex != null) {
+                removePostings(fileIndex);
+
+            } else if (!freeFileIndexSet.isEmpty()) {
+                fileIndex = freeFileIndexSet.pollFirst();
+
+            } else {
+                fileIndex = htmlPathList.size();
+                htmlPathList.add(null);
+                fileInfoList.add(null);
+                termVectorList.add(null);
+            }
+
+            setFile(fileIndex, path, fileInfo, termVector);
+        }
+
+        // move the files with the highest indices into the remaining free slots
+        while (!freeFileIndexSet.isEmpty()) {
+
+            int lastFileIndex = htmlPathList.size() - 1;
+
+            if (htmlPathList.get(lastFileIndex) != null) {
+                int fileIndex = freeFileIndexSet.pollFirst();
+                Path path = htmlPathList.get(lastFileIndex);
+                removePostings(lastFileIndex);
+                setFile(fileIndex, path, fileInfoList.get(lastFileIndex), termVectorList.get(lastFileIndex));
+            } else {
+                freeFileIndexSet.remove(lastFileIndex);
+            }
+
+            htmlPathList.remove(lastFileIndex);
+            fileInfoList.remove(lastFileIndex);
+            termVectorList.remove(lastFileIndex);
+        }
+
+        writeOutputs();
+
+        return changedFileCount;
+    }
+
+    private void setFile(int fileIndex, Path path, FileInfo fileInfo, TermVector termVector) {
+
+        htmlPathList.set(fileIndex, path);
+        fileInfoList.set(fileIndex, fileInfo);
+        termVectorList.set(fileIndex, termVector);
+        fileIndexMap.put(path, fileIndex);
+
+        for (int j = 0; j < termVector.size(); j++) {
+            indicesMap.computeIfAbsent(termVector.getTerm(j), k -> new PostingList()).put(fileIndex, termVector.getScoring(j));
+        }
+    }
+
+    private void removePostings(int fileIndex) {
+
+        TermVector termVector = termVectorList.get(fileIndex);
+
+        for (int j = 0; j < termVector.size(); j++) {
+
+            PostingList postingList = indicesMap.get(termVector.getTerm(j));
+
+            if (postingList != null && postingList.remove(fileIndex) && postingList.size() == 0) {
+                indicesMap.remove(termVector.getTerm(j));
+            }
+        }
+    }
+
+    private void writeOutputs() throws IOException {
+
+        if (indicesMap.isEmpty()) {
+            return;
+        }
+
+        if (Files.notExists(outputFolderPath)) {
+            Files.createDirectories(outputFolderPath);
+        }
+
+        Map<Path, FileInfo> fileInfoMap = new LinkedHashMap<>();
+
+        for (int i = 0; i < htmlPathList.size(); i++) {
+            fileInfoMap.put(htmlPathList.get(i), fileInfoList.get(i));
+        }
+
+        // the build statistics aren't collected in the watch mode, so the pruning summary is collected per update
+        BuildStatistics pruningStatistics = options.isPruning() ? new BuildStatistics() : null;
+
+        try (GzipCompressor compressor = Indexer.createCompressor(options)) {
+
+            Indexer.writeFileInfoList(sourceFolderPath, outputFolderPath.resolve(Indexer.FILE_INFO_LIST_NAME), fileInfoMap, true, compressor);
+
+            Indexer.writeIndices(IndexPruner.prune(indicesMap, fileInfoMap.size(), options, pruningStatistics), outputFolderPath, options, true, compressor);
+        }
+
+        if (pruningStatistics != null) {
+            Indexer.printPruningSummary(pruningStatistics);
+        }
+    }
+
+    private void registerFolders(Path folderPath) throws IOException {
+
+        Files.walkFileTree(folderPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) throws IOException {
+
+                if (isOutputPath(path)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+
+                if (!folderPathMap.containsValue(path)) {
+                    folderPathMap.put(path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), path);
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private boolean isOutputPath(Path path) {
+        return path.startsWith(outputFolderPath);
+    }
+}
@@ -18,26 +18,22 @@
  */
 package org.doctribute.html.indexer.model;
 
-public class WordInfo {
+public enum BuildPhase {
 
-    private final String word;
-    private int scoring;
+    DISCOVERY("discovery"),
+    PARSING("parsing"),
+    TOKENIZATION("tokenization"),
+    STEMMING("stemming"),
+    POSTING_ACCUMULATION("postingAccumulation"),
+    WRITING("writing");
 
-    public WordInfo(String word, int scoring) {
-        this.word = word;
-        this.scoring = scoring;
-    }
-
-    public String getWord() {
-        return word;
-    }
+    private final String label;
 
-    public void setScoring(int scoring) {
-        this.scoring = scoring;
+    private BuildPhase(String label) {
+        this.label = label;
     }
 
-    public int getScoring() {
-        return scoring;
+    public String getLabel() {
+        return label;
     }
-
 }
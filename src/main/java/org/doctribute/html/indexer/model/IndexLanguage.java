@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.model;
+
+import org.tartarus.snowball.SnowballProgram;
+
+/**
+ * The stemmer and stopwords of a single index built from the shared parse of the source files.
+ */
+public class IndexLanguage {
+
+    private final String name;
+    private final SnowballProgram stemmer;
+    private final String stopwordsRegexPattern;
+
+    public IndexLanguage(String name, SnowballProgram stemmer, String stopwordsRegexPattern) {
+        this.name = name;
+        this.stemmer = stemmer;
+        this.stopwordsRegexPattern = stopwordsRegexPattern;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public SnowballProgram getStemmer() {
+        return stemmer;
+    }
+
+    public String getStopwordsRegexPattern() {
+        return stopwordsRegexPattern;
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.model;
+
+import org.doctribute.html.indexer.util.BuildStatistics;
+import org.doctribute.html.indexer.util.CachingStemmer;
+import org.doctribute.html.indexer.util.TermVectorCache;
+
+public class IndexerOptions {
+
+    private int threadCount = 1;
+    private boolean incremental = false;
+    private int stemCacheSize = CachingStemmer.DEFAULT_CACHE_SIZE;
+    private EvictionPolicy stemCachePolicy = EvictionPolicy.LRU;
+    private boolean streaming = false;
+    private InputMode inputMode = InputMode.STREAM;
+    private int shardCount = 3;
+    private int shardSize = 0;
+    private IndexFormat indexFormat = IndexFormat.TEXT;
+    private int autocompleteSize = 0;
+    private boolean positions = false;
+    private boolean gzip = false;
+    private int maxDocumentFrequencyPercent = 0;
+    private int minPostingScore = 0;
+    private int maxPostingsPerTerm = 0;
+    private int maxHeapForIndexMB = 0;
+    private int partitionNumber = 0;
+    private int partitionCount = 0;
+    private boolean watch = false;
+    private int watchDebounceMillis = 300;
+    private TermVectorCache termVectorCache;
+    private BuildStatistics statistics;
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setStemCacheSize(int stemCacheSize) {
+        this.stemCacheSize = stemCacheSize;
+    }
+
+    public int getStemCacheSize() {
+        return stemCacheSize;
+    }
+
+    public void setStemCachePolicy(EvictionPolicy stemCachePolicy) {
+        this.stemCachePolicy = stemCachePolicy;
+    }
+
+    public EvictionPolicy getStemCachePolicy() {
+        return stemCachePolicy;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setInputMode(InputMode inputMode) {
+        this.inputMode = inputMode;
+    }
+
+    public InputMode getInputMode() {
+        return inputMode;
+    }
+
+    public void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Sets the target shard size in bytes. If set, it takes precedence over the shard count.
+     */
+    public void setShardSize(int shardSize) {
+        this.shardSize = shardSize;
+    }
+
+    public int getShardSize() {
+        return shardSize;
+    }
+
+    public void setIndexFormat(IndexFormat indexFormat) {
+        this.indexFormat = indexFormat;
+    }
+
+    public IndexFormat getIndexFormat() {
+        return indexFormat;
+    }
+
+    /**
+     * Sets the number of completions kept per prefix in the autocomplete dictionary. Zero means no dictionary.
+     */
+    public void setAutocompleteSize(int autocompleteSize) {
+        this.autocompleteSize = autocompleteSize;
+    }
+
+    public int getAutocompleteSize() {
+        return autocompleteSize;
+    }
+
+    /**
+     * Sets whether the token positions are kept with the postings and written next to the index shards to support
+     * phrase queries. Supported only by the in-memory build.
+     */
+    public void setPositions(boolean positions) {
+        this.positions = positions;
+    }
+
+    public boolean isPositions() {
+        return positions;
+    }
+
+    /**
+     * Sets whether the gzip compressed copies of the output files are written next to them with the .gz suffix, so
+     * web servers can serve them precompressed. The copies are compressed on separate threads while writing.
+     */
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    /**
+     * Sets the percentage of the files above which a term is dropped from the index, as it hardly helps the ranking.
+     * Zero means no limit.
+     */
+    public void setMaxDocumentFrequencyPercent(int maxDocumentFrequencyPercent) {
+        this.maxDocumentFrequencyPercent = maxDocumentFrequencyPercent;
+    }
+
+    public int getMaxDocumentFrequencyPercent() {
+        return maxDocumentFrequencyPercent;
+    }
+
+    /**
+     * Sets the scoring below which the postings are dropped from the index. Zero means no limit.
+     */
+    public void setMinPostingScore(int minPostingScore) {
+        this.minPostingScore = minPostingScore;
+    }
+
+    public int getMinPostingScore() {
+        return minPostingScore;
+    }
+
+    /**
+     * Sets the number of the top scored postings kept for every term. Zero means no limit.
+     */
+    public void setMaxPostingsPerTerm(int maxPostingsPerTerm) {
+        this.maxPostingsPerTerm = maxPostingsPerTerm;
+    }
+
+    public int getMaxPostingsPerTerm() {
+        return maxPostingsPerTerm;
+    }
+
+    public boolean isPruning() {
+        return maxDocumentFrequencyPercent > 0 || minPostingScore > 0 || maxPostingsPerTerm > 0;
+    }
+
+    /**
+     * Sets the memory budget for the postings collected during the build. If exceeded, the postings are flushed into
+     * temporary files merged at the end. Zero means no limit. Not applied in the incremental mode.
+     */
+    public void setMaxHeapForIndexMB(int maxHeapForIndexMB) {
+        this.maxHeapForIndexMB = maxHeapForIndexMB;
+    }
+
+    public int getMaxHeapForIndexMB() {
+        return maxHeapForIndexMB;
+    }
+
+    /**
+     * Sets the partition of the sorted source files indexed by this process, numbered from one. The partial index is
+     * written into a separate folder and merged with the other partitions by the PartialIndexMerger.
+     */
+    public void setPartitionNumber(int partitionNumber) {
+        this.partitionNumber = partitionNumber;
+    }
+
+    public int getPartitionNumber() {
+        return partitionNumber;
+    }
+
+    /**
+     * Sets the number of partitions the source files are split into. Zero means no partitioning.
+     */
+    public void setPartitionCount(int partitionCount) {
+        this.partitionCount = partitionCount;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * Sets whether the indexer keeps running and updates the index whenever the source files change. The state is
+     * kept in memory, so the incremental mode and the memory budget don't apply.
+     */
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    public boolean isWatch() {
+        return watch;
+    }
+
+    public void setWatchDebounceMillis(int watchDebounceMillis) {
+        this.watchDebounceMillis = watchDebounceMillis;
+    }
+
+    public int getWatchDebounceMillis() {
+        return watchDebounceMillis;
+    }
+
+    /**
+     * Sets the on-disk cache of the term vectors of the parsed files, which can be shared by several builds. The
+     * oversized cache is evicted at the end of the build. Not applied in the watch mode, with the positions or
+     * several stemmers.
+     */
+    public void setTermVectorCache(TermVectorCache termVectorCache) {
+        this.termVectorCache = termVectorCache;
+    }
+
+    public TermVectorCache getTermVectorCache() {
+        return termVectorCache;
+    }
+
+    /**
+     * Sets the collector of the build statistics. If null, no timings are measured. Not applied in the watch mode.
+     */
+    public void setStatistics(BuildStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public BuildStatistics getStatistics() {
+        return statistics;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.doctribute.html.indexer.util.TermDictionary;
+
+/**
+ * Posting lists addressed by the term IDs of the given dictionary. The term strings are resolved only when the index
+ * is converted into a map for the output.
+ */
+public class InvertedIndex {
+
+    private final TermDictionary termDictionary;
+
+    private PostingList[] postingLists = new PostingList[0];
+    private int termCount = 0;
+
+    public InvertedIndex(TermDictionary termDictionary) {
+        this.termDictionary = termDictionary;
+    }
+
+    public TermDictionary getTermDictionary() {
+        return termDictionary;
+    }
+
+    public void add(int termId, int fileIndex, int scoring) {
+        getOrCreatePostingList(termId).add(fileIndex, scoring);
+    }
+
+    /**
+     * Adds the posting together with the term positions in the file, see {@link PostingList#add(int, int, byte[])}.
+     */
+    public void add(int termId, int fileIndex, int scoring, byte[] positionBlock) {
+        getOrCreatePostingList(termId).add(fileIndex, scoring, positionBlock);
+    }
+
+    private PostingList getOrCreatePostingList(int termId) {
+
+        if (termId >= postingLists.length) {
+            postingLists = Arrays.copyOf(postingLists, Math.max(termId + 1, 2 * postingLists.length));
+        }
+
+        PostingList postingList = postingLists[termId];
+
+        if (postingList == null) {
+            postingList = new PostingList();
+            postingLists[termId] = postingList;
+            termCount++;
+        }
+
+        return postingList;
+    }
+
+    public PostingList getPostingList(int termId) {
+        return (termId < postingLists.length) ? postingLists[termId] : null;
+    }
+
+    public int getTermCount() {
+        return termCount;
+    }
+
+    public boolean isEmpty() {
+        return termCount == 0;
+    }
+
+    /**
+     * Replaces the file indices of all the postings, see {@link PostingList#remap(int[])}.
+     */
+    public void remapFileIndices(int[] fileIndexMap) {
+
+        for (PostingList postingList : postingLists) {
+            if (postingList != null) {
+                postingList.remap(fileIndexMap);
+            }
+        }
+    }
+
+    /**
+     * Merges the index sharing the same dictionary into this one. The file indices of both indices have to be sorted.
+     */
+    public void merge(InvertedIndex invertedIndex) {
+
+        if (invertedIndex.termDictionary != termDictionary) {
+            throw new IllegalArgumentException("The merged index has to share the term dictionary.");
+        }
+
+        if (invertedIndex.postingLists.length > postingLists.length) {
+            postingLists = Arrays.copyOf(postingLists, invertedIndex.postingLists.length);
+        }
+
+        for (int termId = 0; termId < invertedIndex.postingLists.length; termId++) {
+
+            PostingList postingList = invertedIndex.postingLists[termId];
+
+            if (postingList == null) {
+                continue;
+            }
+
+            if (postingLists[termId] == null) {
+                postingLists[termId] = postingList;
+                termCount++;
+            } else {
+                postingLists[termId] = PostingList.merge(postingLists[termId], postingList);
+            }
+        }
+    }
+
+    public Map<String, PostingList> toMap() {
+
+        Map<String, PostingList> indicesMap = new HashMap<>(2 * termCount);
+
+        for (int termId = 0; termId < postingLists.length; termId++) {
+            if (postingLists[termId] != null) {
+                indicesMap.put(termDictionary.getTerm(termId), postingLists[termId]);
+            }
+        }
+
+        return indicesMap;
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.model;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+public class PostingList {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] fileIndices;
+    private int[] scorings;
+    private byte[][] positionBlocks;
+    private int size = 0;
+
+    public PostingList() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public PostingList(int capacity) {
+        this.fileIndices = new int[Math.max(capacity, 1)];
+        this.scorings = new int[fileIndices.length];
+    }
+
+    public void add(int fileIndex, int scoring) {
+
+        if (size == fileIndices.length) {
+            int capacity = size + (size >> 1) + 1;
+            fileIndices = Arrays.copyOf(fileIndices, capacity);
+            scorings = Arrays.copyOf(scorings, capacity);
+            if (positionBlocks != null) {
+                positionBlocks = Arrays.copyOf(positionBlocks, capacity);
+            }
+        }
+
+        fileIndices[size] = fileIndex;
+        scorings[size] = scoring;
+        size++;
+    }
+
+    /**
+     * Adds the posting together with the term positions in the file encoded by the PositionCodec.
+     */
+    public void add(int fileIndex, int scoring, byte[] positionBlock) {
+
+        add(fileIndex, scoring);
+
+        if (positionBlocks == null) {
+            positionBlocks = new byte[fileIndices.length][];
+        }
+
+        positionBlocks[size - 1] = positionBlock;
+    }
+
+    /**
+     * Sets the scoring of the given file, keeping the list sorted by the file index.
+     */
+    public void put(int fileIndex, int scoring) {
+
+        int i = Arrays.binarySearch(fileIndices, 0, size, fileIndex);
+
+        if (i >= 0) {
+            scorings[i] = scoring;
+            return;
+        }
+
+        i = -i - 1;
+
+        add(0, 0);
+
+        System.arraycopy(fileIndices, i, fileIndices, i + 1, size - i - 1);
+        System.arraycopy(scorings, i, scorings, i + 1, size - i - 1);
+        if (positionBlocks != null) {
+            System.arraycopy(positionBlocks, i, positionBlocks, i + 1, size - i - 1);
+            positionBlocks[i] = null;
+        }
+
+        fileIndices[i] = fileIndex;
+        scorings[i] = scoring;
+    }
+
+    /**
+     * Removes the posting of the given file from the list sorted by the file index.
+     */
+    public boolean remove(int fileIndex) {
+
+        int i = Arrays.binarySearch(fileIndices, 0, size, fileIndex);
+
+        if (i < 0) {
+            return false;
+        }
+
+        System.arraycopy(fileIndices, i + 1, fileIndices, i, size - i - 1);
+        System.arraycopy(scorings, i + 1, scorings, i, size - i - 1);
+        if (positionBlocks != null) {
+            System.arraycopy(positionBlocks, i + 1, positionBlocks, i, size - i - 1);
+            positionBlocks[size - 1] = null;
+        }
+        size--;
+
+        return true;
+    }
+
+    /**
+     * Replaces every file index by the value found at its position in the given map and sorts the list by the new
+     * file indices.
+     */
+    public void remap(int[] fileIndexMap) {
+
+        // the new file index goes to the upper bits, the original position to the lower ones
+        long[] postings = new long[size];
+
+        for (int i = 0; i < size; i++) {
+            postings[i] = ((long) fileIndexMap[fileIndices[i]] << 32) | i;
+        }
+
+        sort(postings);
+    }
+
+    /**
+     * Sorts the postings by the file indices found in the upper bits of the given values, the lower bits holding the
+     * original positions of the postings.
+     */
+    private void sort(long[] postings) {
+
+        Arrays.sort(postings);
+
+        int[] originalScorings = Arrays.copyOf(scorings, size);
+        byte[][] originalPositionBlocks = (positionBlocks != null) ? Arrays.copyOf(positionBlocks, size) : null;
+
+        for (int i = 0; i < size; i++) {
+
+            int originalIndex = (int) postings[i];
+
+            fileIndices[i] = (int) (postings[i] >>> 32);
+            scorings[i] = originalScorings[originalIndex];
+
+            if (positionBlocks != null) {
+                positionBlocks[i] = originalPositionBlocks[originalIndex];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getFileIndex(int i) {
+        return fileIndices[i];
+    }
+
+    public int getScoring(int i) {
+        return scorings[i];
+    }
+
+    public boolean hasPositions() {
+        return positionBlocks != null;
+    }
+
+    /**
+     * Returns the term positions in the file of the given posting, encoded by the PositionCodec.
+     */
+    public byte[] getPositionBlock(int i) {
+        return (positionBlocks != null) ? positionBlocks[i] : null;
+    }
+
+    public void appendTo(Appendable appendable) throws IOException {
+
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                appendable.append(',');
+            }
+            appendable.append(Integer.toString(fileIndices[i])).append('*').append(Integer.toString(scorings[i]));
+        }
+    }
+
+    /**
+     * Returns the number of chars written by {@link #appendTo(Appendable)}.
+     */
+    public int getLength() {
+
+        int length = Math.max(size - 1, 0);
+
+        for (int i = 0; i < size; i++) {
+            length += getDigitCount(fileIndices[i]) + 1 + getDigitCount(scorings[i]);
+        }
+
+        return length;
+    }
+
+    private static int getDigitCount(int value) {
+
+        int digitCount = (value < 0) ? 2 : 1;
+
+        while ((value /= 10) != 0) {
+            digitCount++;
+        }
+
+        return digitCount;
+    }
+
+    /**
+     * Merges two lists sorted by the file index into a new sorted list.
+     */
+    public static PostingList merge(PostingList postingList1, PostingList postingList2) {
+
+        PostingList postingList = new PostingList(postingList1.size + postingList2.size);
+
+        if (postingList1.positionBlocks != null || postingList2.positionBlocks != null) {
+            postingList.positionBlocks = new byte[postingList.fileIndices.length][];
+        }
+
+        int i = 0;
+        int j = 0;
+
+        while (i < postingList1.size && j < postingList2.size) {
+            if (postingList1.fileIndices[i] < postingList2.fileIndices[j]) {
+                postingList.addFrom(postingList1, i++);
+            } else {
+                postingList.addFrom(postingList2, j++);
+            }
+        }
+
+        while (i < postingList1.size) {
+            postingList.addFrom(postingList1, i++);
+        }
+
+        while (j < postingList2.size) {
+            postingList.addFrom(postingList2, j++);
+        }
+
+        return postingList;
+    }
+
+    /**
+     * Merges any number of lists sorted by the file index into a new sorted list. The lists are concatenated and
+     * sorted at once, so every posting is copied just once.
+     */
+    public static PostingList merge(List<PostingList> postingListList) {
+
+        if (postingListList.size() == 1) {
+            return postingListList.get(0);
+        }
+
+        int size = 0;
+        boolean positions = false;
+
+        for (PostingList postingList : postingListList) {
+            size += postingList.size;
+            positions |= (postingList.positionBlocks != null);
+        }
+
+        PostingList mergedPostingList = new PostingList(size);
+
+        if (positions) {
+            mergedPostingList.positionBlocks = new byte[mergedPostingList.fileIndices.length][];
+        }
+
+        for (PostingList postingList : postingListList) {
+            for (int i = 0; i < postingList.size; i++) {
+                mergedPostingList.addFrom(postingList, i);
+            }
+        }
+
+        // the file index goes to the upper bits, the position in the concatenated list to the lower ones
+        long[] postings = new long[size];
+
+        for (int i = 0; i < size; i++) {
+            postings[i] = ((long) mergedPostingList.fileIndices[i] << 32) | i;
+        }
+
+        mergedPostingList.sort(postings);
+
+        return mergedPostingList;
+    }
+
+    private void addFrom(PostingList postingList, int i) {
+
+        add(postingList.fileIndices[i], postingList.scorings[i]);
+
+        if (positionBlocks != null) {
+            positionBlocks[size - 1] = postingList.getPositionBlock(i);
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder builder = new StringBuilder();
+
+        try {
+            appendTo(builder);
+        } catch (IOException e) {
+            // StringBuilder doesn't throw IOException
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.model;
+
+public class TermVector {
+
+    private final String[] terms;
+    private final int[] scorings;
+
+    public TermVector(String[] terms, int[] scorings) {
+        this.terms = terms;
+        this.scorings = scorings;
+    }
+
+    public int size() {
+        return terms.length;
+    }
+
+    public String getTerm(int i) {
+        return terms[i];
+    }
+
+    public int getScoring(int i) {
+        return scorings[i];
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.doctribute.html.indexer.model.ManifestEntry;
+import org.doctribute.html.indexer.model.TermVector;
+
+public class BuildManifestFile {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Returns the entries keyed by the relative path, or an empty map if the manifest doesn't exist
+     * or was created with a different format version or indexer settings.
+     */
+    public static Map<String, ManifestEntry> read(Path path, String settingsFingerprint) throws IOException {
+
+        Map<String, ManifestEntry> manifestEntryMap = new LinkedHashMap<>();
+
+        if (Files.notExists(path)) {
+            return manifestEntryMap;
+        }
+
+        // the lengths read from a damaged manifest can't be trusted, so no array may be larger than the file
+        long fileSize = Files.size(path);
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+
+            if (input.readInt() != FORMAT_VERSION || !settingsFingerprint.equals(readString(input, fileSize))) {
+                return manifestEntryMap;
+            }
+
+            int count = input.readInt();
+
+            for (int i = 0; i < count; i++) {
+
+                ManifestEntry manifestEntry = new ManifestEntry(readString(input, fileSize));
+                manifestEntry.setFileIndex(input.readInt());
+                manifestEntry.setSize(input.readLong());
+                manifestEntry.setLastModified(input.readLong());
+
+                byte[] hash = new byte[input.readUnsignedByte()];
+                input.readFully(hash);
+                manifestEntry.setHash(hash);
+
+                if (input.readBoolean()) {
+                    manifestEntry.setTitle(readString(input, fileSize));
+                }
+
+                int size = readLength(input, fileSize);
+                String[] terms = new String[size];
+                int[] scorings = new int[size];
+
+                for (int j = 0; j < size; j++) {
+                    terms[j] = readString(input, fileSize);
+                    scorings[j] = input.readInt();
+                }
+
+                manifestEntry.setTermVector(new TermVector(terms, scorings));
+
+                manifestEntryMap.put(manifestEntry.getRelativePath(), manifestEntry);
+            }
+
+        } catch (IOException | RuntimeException e) {
+            // a damaged manifest only means a full rebuild
+            manifestEntryMap.clear();
+        }
+
+        return manifestEntryMap;
+    }
+
+    /**
+     * Writes the manifest into a temporary file moved into place at the end, so an interrupted build can't leave
+     * a partially written manifest behind.
+     */
+    public static void write(Path path, String settingsFingerprint, Collection<ManifestEntry> manifestEntryCollection) throws IOException {
+
+        Path tempPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), TEMP_SUFFIX);
+
+        try {
+            writeEntries(tempPath, settingsFingerprint, manifestEntryCollection);
+
+            try {
+                Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    private static void writeEntries(Path path, String settingsFingerprint, Collection<ManifestEntry> manifestEntryCollection) throws IOException {
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+
+            output.writeInt(FORMAT_VERSION);
+            writeString(output, settingsFingerprint);
+            output.writeInt(manifestEntryCollection.size());
+
+            for (ManifestEntry manifestEntry : manifestEntryCollection) {
+
+                writeString(output, manifestEntry.getRelativePath());
+                output.writeInt(manifestEntry.getFileIndex());
+                output.writeLong(manifestEntry.getSize());
+                output.writeLong(manifestEntry.getLastModified());
+                output.writeByte(manifestEntry.getHash().length);
+                output.write(manifestEntry.getHash());
+
+                output.writeBoolean(manifestEntry.getTitle() != null);
+                if (manifestEntry.getTitle() != null) {
+                    writeString(output, manifestEntry.getTitle());
+                }
+
+                TermVector termVector = manifestEntry.getTermVector();
+                output.writeInt(termVector.size());
+
+                for (int j = 0; j < termVector.size(); j++) {
+                    writeString(output, termVector.getTerm(j));
+                    output.writeInt(termVector.getScoring(j));
+                }
+            }
+        }
+    }
+
+    // DataOutput.writeUTF is limited to 64 kB, which is not enough for large stopword lists
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input, long fileSize) throws IOException {
+        byte[] bytes = new byte[readLength(input, fileSize)];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readLength(DataInputStream input, long fileSize) throws IOException {
+
+        int length = input.readInt();
+
+        if (length < 0 || length > fileSize) {
+            throw new IOException("The manifest is damaged.");
+        }
+
+        return length;
+    }
+}
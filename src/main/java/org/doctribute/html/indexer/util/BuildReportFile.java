@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import org.doctribute.html.indexer.model.BuildPhase;
+import org.doctribute.html.indexer.model.PruningRule;
+
+/**
+ * Writes the build statistics as a JSON document.
+ */
+public class BuildReportFile {
+
+    public static void write(Path path, Path sourceFolderPath, Path outputFolderPath, BuildStatistics statistics) throws IOException {
+        write(path, sourceFolderPath, Collections.singletonList(outputFolderPath), statistics);
+    }
+
+    /**
+     * Lists the files of several output folders, prefixed by the folder names.
+     */
+    public static void write(Path path, Path sourceFolderPath, List<Path> outputFolderPathList, BuildStatistics statistics) throws IOException {
+
+        double wallSeconds = statistics.getWallNanos() / 1e9;
+
+        try (Writer writer = Files.newBufferedWriter(path)) {
+
+            writer.write("{\n");
+            writer.write("  \"sourceFolderPath\": " + JsonStrings.quote(sourceFolderPath.toString()) + ",\n");
+            writer.write("  \"wallTimeMs\": " + format(statistics.getWallNanos() / 1e6) + ",\n");
+            writer.write("  \"fileCount\": " + statistics.getFileCount() + ",\n");
+            writer.write("  \"tokenCount\": " + statistics.getTokenCount() + ",\n");
+            writer.write("  \"filesPerSecond\": " + format((wallSeconds > 0) ? statistics.getFileCount() / wallSeconds : 0) + ",\n");
+            writer.write("  \"tokensPerSecond\": " + format((wallSeconds > 0) ? statistics.getTokenCount() / wallSeconds : 0) + ",\n");
+            writer.write("  \"termCount\": " + statistics.getTermCount() + ",\n");
+
+            writer.write("  \"phaseTimesMs\": {");
+            BuildPhase[] phases = BuildPhase.values();
+            for (int i = 0; i < phases.length; i++) {
+                writer.write(((i > 0) ? "," : "") + "\n    " + JsonStrings.quote(phases[i].getLabel()) + ": " + format(statistics.getPhaseNanos(phases[i]) / 1e6));
+            }
+            writer.write("\n  },\n");
+
+            writer.write("  \"stemCache\": {\"hits\": " + statistics.getStemCacheHitCount() + ", \"misses\": " + statistics.getStemCacheMissCount() + "},\n");
+
+            if (!statistics.getPruningRules().isEmpty()) {
+                writer.write("  \"pruning\": {");
+                boolean firstRule = true;
+                for (PruningRule rule : statistics.getPruningRules()) {
+                    writer.write((firstRule ? "" : ",") + "\n    " + JsonStrings.quote(rule.getLabel()) + ": {\"droppedTerms\": " + statistics.getPrunedTermCount(rule)
+                            + ", \"droppedPostings\": " + statistics.getPrunedPostingCount(rule)
+                            + ", \"savedBytes\": " + statistics.getPrunedBytes(rule) + "}");
+                    firstRule = false;
+                }
+                writer.write("\n  },\n");
+            }
+
+            if (statistics.getTermVectorCacheHitCount() + statistics.getTermVectorCacheMissCount() > 0) {
+                writer.write("  \"termVectorCache\": {\"hits\": " + statistics.getTermVectorCacheHitCount() + ", \"misses\": " + statistics.getTermVectorCacheMissCount() + "},\n");
+            }
+
+            writer.write("  \"slowestFiles\": [");
+            List<BuildStatistics.FileRecord> fileRecordList = statistics.getSlowestFiles();
+            for (int i = 0; i < fileRecordList.size(); i++) {
+                BuildStatistics.FileRecord fileRecord = fileRecordList.get(i);
+                String relativePath = sourceFolderPath.relativize(fileRecord.getPath()).toString().replace("\\", "/");
+                writer.write(((i > 0) ? "," : "") + "\n    {\"path\": " + JsonStrings.quote(relativePath) + ", \"timeMs\": " + format(fileRecord.getNanos() / 1e6) + ", \"tokenCount\": " + fileRecord.getTokenCount() + "}");
+            }
+            writer.write("\n  ],\n");
+
+            writer.write("  \"largestPostingLists\": [");
+            List<BuildStatistics.TermRecord> termRecordList = statistics.getLargestTerms();
+            for (int i = 0; i < termRecordList.size(); i++) {
+                BuildStatistics.TermRecord termRecord = termRecordList.get(i);
+                writer.write(((i > 0) ? "," : "") + "\n    {\"term\": " + JsonStrings.quote(termRecord.getTerm()) + ", \"postingCount\": " + termRecord.getPostingCount() + "}");
+            }
+            writer.write("\n  ],\n");
+
+            if (statistics.getPositionBlockCount() > 0) {
+                writer.write("  \"positions\": {\"positionCount\": " + statistics.getPositionCount()
+                        + ", \"blockCount\": " + statistics.getPositionBlockCount()
+                        + ", \"heapBytes\": " + statistics.getPositionHeapBytes()
+                        + ", \"outputBytes\": " + getTotalSize(outputFolderPathList, "positions-*.js") + "},\n");
+            }
+
+            writer.write("  \"outputFiles\": [");
+            boolean first = true;
+            for (Path outputFolderPath : outputFolderPathList) {
+                if (Files.isDirectory(outputFolderPath)) {
+                    String prefix = (outputFolderPathList.size() > 1) ? outputFolderPath.getFileName() + "/" : "";
+                    try (DirectoryStream<Path> outputPathStream = Files.newDirectoryStream(outputFolderPath, "*.{js,js.gz}")) {
+                        for (Path outputPath : outputPathStream) {
+                            writer.write((first ? "" : ",") + "\n    {\"name\": " + JsonStrings.quote(prefix + outputPath.getFileName()) + ", \"bytes\": " + Files.size(outputPath) + "}");
+                            first = false;
+                        }
+                    }
+                }
+            }
+            writer.write("\n  ]\n");
+            writer.write("}\n");
+        }
+    }
+
+    private static long getTotalSize(List<Path> folderPathList, String glob) throws IOException {
+
+        long size = 0;
+
+        for (Path folderPath : folderPathList) {
+            if (Files.isDirectory(folderPath)) {
+                try (DirectoryStream<Path> pathStream = Files.newDirectoryStream(folderPath, glob)) {
+                    for (Path path : pathStream) {
+                        size += Files.size(path);
+                    }
+                }
+            }
+        }
+
+        return size;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import org.doctribute.html.indexer.model.BuildPhase;
+import org.doctribute.html.indexer.model.PruningRule;
+
+/**
+ * Collects timings and counters of a single build. The collection is thread-safe, so a single instance is shared by
+ * all the workers. Times of the phases processed by workers in parallel are summed over all the threads.
+ */
+public class BuildStatistics {
+
+    public static final int DEFAULT_TOP_COUNT = 10;
+
+    // the array header and the reference to the array, assuming compressed references
+    private static final int POSITION_BLOCK_OVERHEAD = 16 + 4;
+    private static final String JFR_EVENT_WRITER_CLASS_NAME = "org.doctribute.html.indexer.util.JfrEventWriter";
+
+    private final int topCount;
+    private final LongAdder[] phaseNanos = new LongAdder[BuildPhase.values().length];
+    private final LongAdder fileCount = new LongAdder();
+    private final LongAdder tokenCount = new LongAdder();
+    private final LongAdder positionCount = new LongAdder();
+    private final LongAdder positionBlockCount = new LongAdder();
+    private final LongAdder positionBlockBytes = new LongAdder();
+    private final LongAdder[] prunedTermCounts = new LongAdder[PruningRule.values().length];
+    private final LongAdder[] prunedPostingCounts = new LongAdder[PruningRule.values().length];
+    private final LongAdder[] prunedBytes = new LongAdder[PruningRule.values().length];
+    private final Set<PruningRule> pruningRuleSet = Collections.synchronizedSet(EnumSet.noneOf(PruningRule.class));
+    private final LongAdder termVectorCacheHitCount = new LongAdder();
+    private final LongAdder termVectorCacheMissCount = new LongAdder();
+    private final PriorityQueue<FileRecord> slowestFileQueue = new PriorityQueue<>(Comparator.comparingLong(FileRecord::getNanos));
+    private final PriorityQueue<TermRecord> largestTermQueue = new PriorityQueue<>(Comparator.comparingInt(TermRecord::getPostingCount));
+    private final Map<CachingStemmer, Boolean> stemmerMap = new IdentityHashMap<>();
+
+    private long termCount = 0;
+    private long wallNanos = 0;
+    private BuildEventWriter jfrEventWriter;
+
+    public BuildStatistics() {
+        this(DEFAULT_TOP_COUNT);
+    }
+
+    public BuildStatistics(int topCount) {
+
+        this.topCount = topCount;
+
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+
+        for (int i = 0; i < prunedBytes.length; i++) {
+            prunedTermCounts[i] = new LongAdder();
+            prunedPostingCounts[i] = new LongAdder();
+            prunedBytes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Emits JFR events for every indexed file and, once the build is finished, for every phase.
+     */
+    public void enableJfrEvents() throws IOException {
+
+        // the writer is compiled only by JDKs providing the jdk.jfr module
+        try {
+            jfrEventWriter = (BuildEventWriter) Class.forName(JFR_EVENT_WRITER_CLASS_NAME).newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IOException("JFR events aren't supported by this build or JVM.", e);
+        }
+    }
+
+    public void addPhaseNanos(BuildPhase phase, long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    public void recordFile(Path path, long nanos, int fileTokenCount) {
+
+        fileCount.increment();
+        tokenCount.add(fileTokenCount);
+
+        synchronized (slowestFileQueue) {
+            slowestFileQueue.add(new FileRecord(path, nanos, fileTokenCount));
+            if (slowestFileQueue.size() > topCount) {
+                slowestFileQueue.poll();
+            }
+        }
+
+        if (jfrEventWriter != null) {
+            jfrEventWriter.writeFileEvent(path.toString(), nanos, fileTokenCount);
+        }
+    }
+
+    /**
+     * Records the position blocks of a single file.
+     */
+    public void recordPositions(int filePositionCount, int blockCount, long blockBytes) {
+        positionCount.add(filePositionCount);
+        positionBlockCount.add(blockCount);
+        positionBlockBytes.add(blockBytes);
+    }
+
+    /**
+     * Records the terms and postings removed from a single index by the pruning rule and the bytes it saved.
+     */
+    public void recordPruning(PruningRule rule, long termCount, long postingCount, long bytes) {
+        pruningRuleSet.add(rule);
+        prunedTermCounts[rule.ordinal()].add(termCount);
+        prunedPostingCounts[rule.ordinal()].add(postingCount);
+        prunedBytes[rule.ordinal()].add(bytes);
+    }
+
+    public void recordTermVectorCacheLookup(boolean hit) {
+        (hit ? termVectorCacheHitCount : termVectorCacheMissCount).increment();
+    }
+
+    public void recordTerm(String term, int postingCount) {
+
+        synchronized (largestTermQueue) {
+
+            termCount++;
+
+            largestTermQueue.add(new TermRecord(term, postingCount));
+            if (largestTermQueue.size() > topCount) {
+                largestTermQueue.poll();
+            }
+        }
+    }
+
+    public void registerStemmer(CachingStemmer stemmer) {
+
+        synchronized (stemmerMap) {
+            stemmerMap.put(stemmer, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Marks the build as finished.
+     */
+    public void finish(long wallNanos) {
+
+        this.wallNanos = wallNanos;
+
+        if (jfrEventWriter != null) {
+            for (BuildPhase phase : BuildPhase.values()) {
+                jfrEventWriter.writePhaseEvent(phase.getLabel(), getPhaseNanos(phase));
+            }
+        }
+    }
+
+    public long getPhaseNanos(BuildPhase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getFileCount() {
+        return fileCount.sum();
+    }
+
+    public long getTokenCount() {
+        return tokenCount.sum();
+    }
+
+    public long getPositionCount() {
+        return positionCount.sum();
+    }
+
+    public long getPositionBlockCount() {
+        return positionBlockCount.sum();
+    }
+
+    /**
+     * Returns the estimated heap taken by the position blocks.
+     */
+    public long getPositionHeapBytes() {
+        return positionBlockBytes.sum() + POSITION_BLOCK_OVERHEAD * positionBlockCount.sum();
+    }
+
+    /**
+     * Returns the pruning rules applied during the build.
+     */
+    public Set<PruningRule> getPruningRules() {
+
+        synchronized (pruningRuleSet) {
+            return pruningRuleSet.isEmpty() ? EnumSet.noneOf(PruningRule.class) : EnumSet.copyOf(pruningRuleSet);
+        }
+    }
+
+    public long getPrunedTermCount(PruningRule rule) {
+        return prunedTermCounts[rule.ordinal()].sum();
+    }
+
+    public long getPrunedPostingCount(PruningRule rule) {
+        return prunedPostingCounts[rule.ordinal()].sum();
+    }
+
+    public long getPrunedBytes(PruningRule rule) {
+        return prunedBytes[rule.ordinal()].sum();
+    }
+
+    public long getTermVectorCacheHitCount() {
+        return termVectorCacheHitCount.sum();
+    }
+
+    public long getTermVectorCacheMissCount() {
+        return termVectorCacheMissCount.sum();
+    }
+
+    public long getTermCount() {
+
+        synchronized (largestTermQueue) {
+            return termCount;
+        }
+    }
+
+    public long getStemCacheHitCount() {
+
+        long hitCount = 0;
+
+        synchronized (stemmerMap) {
+            for (CachingStemmer stemmer : stemmerMap.keySet()) {
+                hitCount += stemmer.getHitCount();
+            }
+        }
+
+        return hitCount;
+    }
+
+    public long getStemCacheMissCount() {
+
+        long missCount = 0;
+
+        synchronized (stemmerMap) {
+            for (CachingStemmer stemmer : stemmerMap.keySet()) {
+                missCount += stemmer.getMissCount();
+            }
+        }
+
+        return missCount;
+    }
+
+    /**
+     * Returns the slowest files, the slowest first.
+     */
+    public List<FileRecord> getSlowestFiles() {
+
+        List<FileRecord> fileRecordList;
+
+        synchronized (slowestFileQueue) {
+            fileRecordList = new ArrayList<>(slowestFileQueue);
+        }
+
+        fileRecordList.sort(Collections.reverseOrder(slowestFileQueue.comparator()));
+
+        return fileRecordList;
+    }
+
+    /**
+     * Returns the terms with the most postings, the largest first.
+     */
+    public List<TermRecord> getLargestTerms() {
+
+        List<TermRecord> termRecordList;
+
+        synchronized (largestTermQueue) {
+            termRecordList = new ArrayList<>(largestTermQueue);
+        }
+
+        termRecordList.sort(Collections.reverseOrder(largestTermQueue.comparator()));
+
+        return termRecordList;
+    }
+
+    public static class FileRecord {
+
+        private final Path path;
+        private final long nanos;
+        private final int tokenCount;
+
+        public FileRecord(Path path, long nanos, int tokenCount) {
+            this.path = path;
+            this.nanos = nanos;
+            this.tokenCount = tokenCount;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public int getTokenCount() {
+            return tokenCount;
+        }
+    }
+
+    public static class TermRecord {
+
+        private final String term;
+        private final int postingCount;
+
+        public TermRecord(String term, int postingCount) {
+            this.term = term;
+            this.postingCount = postingCount;
+        }
+
+        public String getTerm() {
+            return term;
+        }
+
+        public int getPostingCount() {
+            return postingCount;
+        }
+    }
+}
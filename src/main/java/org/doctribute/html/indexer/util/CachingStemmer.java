@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.doctribute.html.indexer.model.EvictionPolicy;
+import org.tartarus.snowball.SnowballProgram;
+
+/**
+ * Memoizes the stems of the recently processed words. Natural language text is dominated by a few thousand words,
+ * so most of the stemming calls are served from the cache. The instance is not thread-safe, just like the wrapped
+ * stemmer, so every thread has to use its own one.
+ */
+public class CachingStemmer {
+
+    public static final int DEFAULT_CACHE_SIZE = 10000;
+
+    private final SnowballProgram stemmer;
+    private final Map<String, String> cache;
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    public CachingStemmer(SnowballProgram stemmer) {
+        this(stemmer, DEFAULT_CACHE_SIZE, EvictionPolicy.LRU);
+    }
+
+    public CachingStemmer(SnowballProgram stemmer, int cacheSize, EvictionPolicy evictionPolicy) {
+
+        this.stemmer = stemmer;
+
+        if (cacheSize > 0) {
+            this.cache = new LinkedHashMap<String, String>(16, 0.75f, evictionPolicy == EvictionPolicy.LRU) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > cacheSize;
+                }
+            };
+        } else {
+            this.cache = null;
+        }
+    }
+
+    public String stem(String word) {
+
+        if (cache == null) {
+            missCount++;
+            return getStemWord(word);
+        }
+
+        String stemWord = cache.get(word);
+
+        if (stemWord != null) {
+            hitCount++;
+
+        } else {
+            missCount++;
+            stemWord = getStemWord(word);
+            cache.put(word, stemWord);
+        }
+
+        return stemWord;
+    }
+
+    public SnowballProgram getStemmer() {
+        return stemmer;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    private String getStemWord(String word) {
+
+        stemmer.setCurrent(word.trim().toLowerCase());
+        stemmer.stem();
+
+        return stemmer.getCurrent();
+    }
+}
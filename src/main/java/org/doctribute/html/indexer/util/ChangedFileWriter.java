@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Collects the content in memory and writes it on close only if it differs from the current file content. This way
+ * the modification time of unchanged files is kept, which matters for tools watching the output folder. If the
+ * compressor is given, the compressed copy is written together with the file or when it is missing.
+ */
+public class ChangedFileWriter extends Writer {
+
+    private final Path path;
+    private final GzipCompressor compressor;
+    private final StringBuilder builder = new StringBuilder();
+    private boolean closed = false;
+
+    public ChangedFileWriter(Path path) {
+        this(path, null);
+    }
+
+    public ChangedFileWriter(Path path, GzipCompressor compressor) {
+        this.path = path;
+        this.compressor = compressor;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+        builder.append(chars, offset, length);
+    }
+
+    @Override
+    public void write(String text) {
+        builder.append(text);
+    }
+
+    @Override
+    public Writer append(CharSequence text) {
+        builder.append(text);
+        return this;
+    }
+
+    @Override
+    public Writer append(char c) {
+        builder.append(c);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        byte[] content = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+        boolean changed = Files.notExists(path) || Files.size(path) != content.length || !Arrays.equals(Files.readAllBytes(path), content);
+
+        if (changed) {
+            Files.write(path, content);
+        }
+
+        if (compressor != null && (changed || Files.notExists(GzipCompressor.getCompressedPath(path)))) {
+            compressor.compress(path, content);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import java.util.Arrays;
+import org.doctribute.html.indexer.model.PostingList;
+
+/**
+ * Encodes postings into the compact index format. The postings are sorted by the file index and each one is stored
+ * as the difference to the previous file index followed by the quantized scoring. As most of the words occur just
+ * once in the normal text, the scoring of 1 is only flagged in the lowest bit of the difference.
+ * <p>
+ * Numbers are written as varints directly in base64 chars, each char holding five bits of the value and a flag
+ * whether more chars follow.
+ * <p>
+ * Scorings below 32 are stored exactly, larger ones on a logarithmic scale (eight steps per doubling), which keeps
+ * their order.
+ */
+public class CompactPostingCodec {
+
+    private static final String BASE64_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    private static final int PAYLOAD_BITS = 5;
+    private static final int PAYLOAD_MASK = (1 << PAYLOAD_BITS) - 1;
+    private static final int CONTINUATION_FLAG = 1 << PAYLOAD_BITS;
+
+    private static final int EXACT_SCORING_LIMIT = 32;
+    private static final int STEPS_PER_DOUBLING = 8;
+
+    private static final int[] BASE64_VALUES = new int[128];
+
+    static {
+        Arrays.fill(BASE64_VALUES, -1);
+        for (int i = 0; i < BASE64_CHARS.length(); i++) {
+            BASE64_VALUES[BASE64_CHARS.charAt(i)] = i;
+        }
+    }
+
+    public static String encode(PostingList postingList) {
+
+        int size = postingList.size();
+
+        Integer[] order = new Integer[size];
+
+        boolean sorted = true;
+
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+            sorted &= (i == 0 || postingList.getFileIndex(i - 1) <= postingList.getFileIndex(i));
+        }
+
+        if (!sorted) {
+            Arrays.sort(order, (i, j) -> Integer.compare(postingList.getFileIndex(i), postingList.getFileIndex(j)));
+        }
+
+        StringBuilder builder = new StringBuilder(size * 2);
+
+        int previousFileIndex = 0;
+
+        for (int i = 0; i < size; i++) {
+
+            int fileIndex = postingList.getFileIndex(order[i]);
+            int scoring = postingList.getScoring(order[i]);
+
+            long delta = (long) fileIndex - previousFileIndex;
+
+            if (scoring == 1) {
+                writeVarint(builder, delta << 1);
+            } else {
+                writeVarint(builder, (delta << 1) | 1);
+                writeVarint(builder, quantize(scoring));
+            }
+
+            previousFileIndex = fileIndex;
+        }
+
+        return builder.toString();
+    }
+
+    public static PostingList decode(String encodedPostings) {
+
+        PostingList postingList = new PostingList();
+
+        int[] position = {0};
+        int fileIndex = 0;
+
+        while (position[0] < encodedPostings.length()) {
+
+            long value = readVarint(encodedPostings, position);
+
+            fileIndex += (int) (value >>> 1);
+
+            if ((value & 1) == 0) {
+                postingList.add(fileIndex, 1);
+            } else {
+                postingList.add(fileIndex, dequantize((int) readVarint(encodedPostings, position)));
+            }
+        }
+
+        return postingList;
+    }
+
+    public static int quantize(int scoring) {
+
+        if (scoring < EXACT_SCORING_LIMIT) {
+            return Math.max(scoring, 0);
+        }
+
+        return EXACT_SCORING_LIMIT + (int) Math.round(STEPS_PER_DOUBLING * Math.log((double) scoring / EXACT_SCORING_LIMIT) / Math.log(2));
+    }
+
+    public static int dequantize(int quantizedScoring) {
+
+        if (quantizedScoring < EXACT_SCORING_LIMIT) {
+            return quantizedScoring;
+        }
+
+        return (int) Math.round(EXACT_SCORING_LIMIT * Math.pow(2, (double) (quantizedScoring - EXACT_SCORING_LIMIT) / STEPS_PER_DOUBLING));
+    }
+
+    static void writeVarint(StringBuilder builder, long value) {
+
+        while ((value & ~PAYLOAD_MASK) != 0) {
+            builder.append(BASE64_CHARS.charAt((int) (value & PAYLOAD_MASK) | CONTINUATION_FLAG));
+            value >>>= PAYLOAD_BITS;
+        }
+
+        builder.append(BASE64_CHARS.charAt((int) value));
+    }
+
+    static long readVarint(String text, int[] position) {
+
+        long value = 0;
+        int shift = 0;
+        int digit;
+
+        do {
+            char c = text.charAt(position[0]++);
+
+            digit = (c < BASE64_VALUES.length) ? BASE64_VALUES[c] : -1;
+
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid char in the encoded postings: " + c);
+            }
+
+            value |= (long) (digit & PAYLOAD_MASK) << shift;
+            shift += PAYLOAD_BITS;
+
+        } while ((digit & CONTINUATION_FLAG) != 0);
+
+        return value;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Decodes UTF-8 files in bulk. The buffers are reused between files, so a single instance mustn't be shared by
+ * multiple threads.
+ */
+public class FileDecoder {
+
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private final boolean memoryMapped;
+    private ByteBuffer byteBuffer;
+    private CharBuffer charBuffer;
+
+    public FileDecoder(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Returns the decoded file content. The returned buffer is backed by an array and valid until the next call.
+     */
+    public CharBuffer decode(Path path) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            long size = channel.size();
+
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("The file is too large: " + path);
+            }
+
+            ByteBuffer input;
+
+            if (memoryMapped) {
+                input = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            } else {
+
+                input = getByteBuffer((int) size);
+
+                while (input.hasRemaining() && channel.read(input) >= 0) {
+                }
+
+                input.flip();
+            }
+
+            // UTF-8 never produces more chars than bytes
+            CharBuffer output = getCharBuffer(input.remaining());
+
+            decoder.reset();
+
+            CoderResult result = decoder.decode(input, output, true);
+
+            if (!result.isUnderflow()) {
+                result.throwException();
+            }
+
+            decoder.flush(output);
+            output.flip();
+
+            return output;
+        }
+    }
+
+    private ByteBuffer getByteBuffer(int size) {
+
+        if (byteBuffer == null || byteBuffer.capacity() < size) {
+            byteBuffer = ByteBuffer.allocate(Math.max(size, INITIAL_CAPACITY));
+        }
+
+        byteBuffer.clear();
+        byteBuffer.limit(size);
+
+        return byteBuffer;
+    }
+
+    private CharBuffer getCharBuffer(int size) {
+
+        if (charBuffer == null || charBuffer.capacity() < size) {
+            charBuffer = CharBuffer.allocate(Math.max(size, INITIAL_CAPACITY));
+        }
+
+        charBuffer.clear();
+
+        return charBuffer;
+    }
+}
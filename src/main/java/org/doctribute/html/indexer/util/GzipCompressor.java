@@ -0,0 +1,259 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the gzip compressed copies of the output files on background threads. The content is passed to the
+ * compression in chunks while the plain file is still being written, so no file is read back and several files are
+ * compressed in parallel. The chunks of a single file are compressed in order. Closing waits until all the copies
+ * are written.
+ */
+public class GzipCompressor implements Closeable {
+
+    public static final String COMPRESSED_SUFFIX = ".gz";
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    // bounds the memory taken by the chunks not compressed yet
+    private static final int MAX_PENDING_CHUNK_COUNT = 64;
+
+    private interface CompressionTask {
+
+        void run() throws IOException;
+    }
+
+    private final ExecutorService executor;
+    private final Semaphore pendingChunks = new Semaphore(MAX_PENDING_CHUNK_COUNT);
+    private final List<CompressedCopy> compressedCopyList = new ArrayList<>();
+
+    public GzipCompressor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public GzipCompressor(int threadCount) {
+        this.executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "gzip-compressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static Path getCompressedPath(Path path) {
+        return path.resolveSibling(path.getFileName() + COMPRESSED_SUFFIX);
+    }
+
+    /**
+     * Returns a writer of the given file, which compresses the written content also into its compressed copy.
+     */
+    public Writer newWriter(Path path) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new TeeOutputStream(path), StandardCharsets.UTF_8.newEncoder()));
+    }
+
+    /**
+     * Compresses the content already written into the given file.
+     */
+    public void compress(Path path, byte[] content) throws IOException {
+
+        CompressedCopy compressedCopy = new CompressedCopy(path);
+
+        compressedCopy.submit(() -> compressedCopy.output.write(content));
+        compressedCopy.finish();
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        IOException exception = null;
+
+        synchronized (compressedCopyList) {
+
+            for (CompressedCopy compressedCopy : compressedCopyList) {
+
+                compressedCopy.tail.join();
+
+                if (compressedCopy.failure != null && exception == null) {
+                    exception = new IOException("The compressed copy of " + compressedCopy.path + " couldn't be written.", compressedCopy.failure);
+                }
+            }
+
+            compressedCopyList.clear();
+        }
+
+        executor.shutdown();
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * The compressed copy of a single file. The compression tasks are chained, so they run one after another.
+     */
+    private class CompressedCopy {
+
+        private final Path path;
+        private final OutputStream output;
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+        private volatile Exception failure;
+
+        CompressedCopy(Path path) throws IOException {
+
+            this.path = path;
+            this.output = new GZIPOutputStream(Files.newOutputStream(getCompressedPath(path)), CHUNK_SIZE) {
+                {
+                    def.setLevel(Deflater.BEST_COMPRESSION);
+                }
+            };
+
+            synchronized (compressedCopyList) {
+                compressedCopyList.add(this);
+            }
+        }
+
+        void submit(CompressionTask compressionTask) throws IOException {
+            submit(compressionTask, false);
+        }
+
+        void finish() throws IOException {
+            // the stream is closed even after a failure
+            submit(output::close, true);
+        }
+
+        private void submit(CompressionTask compressionTask, boolean runAfterFailure) throws IOException {
+
+            try {
+                pendingChunks.acquire();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("The compression has been interrupted.");
+            }
+
+            tail = tail.thenRunAsync(() -> {
+                try {
+                    if (failure == null || runAfterFailure) {
+                        compressionTask.run();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                } finally {
+                    pendingChunks.release();
+                }
+            }, executor);
+        }
+    }
+
+    /**
+     * Writes the content into the file and passes it in chunks to its compressed copy.
+     */
+    private class TeeOutputStream extends OutputStream {
+
+        private final OutputStream output;
+        private final CompressedCopy compressedCopy;
+        private byte[] chunk = new byte[CHUNK_SIZE];
+        private int length = 0;
+        private boolean closed = false;
+
+        TeeOutputStream(Path path) throws IOException {
+            this.output = Files.newOutputStream(path);
+            this.compressedCopy = new CompressedCopy(path);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+
+            if (length == chunk.length) {
+                flushChunk();
+            }
+
+            chunk[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) throws IOException {
+
+            while (count > 0) {
+
+                if (length == chunk.length) {
+                    flushChunk();
+                }
+
+                int copiedCount = Math.min(count, chunk.length - length);
+                System.arraycopy(bytes, offset, chunk, length, copiedCount);
+
+                length += copiedCount;
+                offset += copiedCount;
+                count -= copiedCount;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+
+            try {
+                flushChunk();
+                output.close();
+            } finally {
+                compressedCopy.finish();
+            }
+        }
+
+        private void flushChunk() throws IOException {
+
+            if (length == 0) {
+                return;
+            }
+
+            output.write(chunk, 0, length);
+
+            byte[] compressedChunk = chunk;
+            int compressedLength = length;
+
+            compressedCopy.submit(() -> compressedCopy.output.write(compressedChunk, 0, compressedLength));
+
+            chunk = new byte[CHUNK_SIZE];
+            length = 0;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map of non-negative int keys to int values, avoiding the boxing and entry objects of HashMap.
+ */
+public class IntIntHashMap {
+
+    public interface EntryHandler {
+
+        void handleEntry(int key, int value);
+    }
+
+    private static final int FREE_KEY = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size = 0;
+
+    public IntIntHashMap() {
+        this(64);
+    }
+
+    public IntIntHashMap(int capacity) {
+
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 4) - 1) << 1;
+
+        this.keys = new int[tableSize];
+        this.values = new int[tableSize];
+        this.mask = tableSize - 1;
+
+        Arrays.fill(keys, FREE_KEY);
+    }
+
+    /**
+     * Adds the delta to the value of the key, a missing key having the zero value.
+     */
+    public void addTo(int key, int delta) {
+
+        int slot = getSlot(key);
+
+        while (keys[slot] != FREE_KEY) {
+
+            if (keys[slot] == key) {
+                values[slot] += delta;
+                return;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = delta;
+        size++;
+
+        // kept at most half full
+        if (2 * size > keys.length) {
+            rehash();
+        }
+    }
+
+    public int get(int key) {
+
+        int slot = getSlot(key);
+
+        while (keys[slot] != FREE_KEY) {
+
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(EntryHandler entryHandler) {
+
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE_KEY) {
+                entryHandler.handleEntry(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Removes all the entries, keeping the allocated capacity.
+     */
+    public void clear() {
+
+        if (size > 0) {
+            Arrays.fill(keys, FREE_KEY);
+            size = 0;
+        }
+    }
+
+    private int getSlot(int key) {
+
+        int hash = key * 0x9E3779B9;
+
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void rehash() {
+
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+
+        keys = new int[2 * oldKeys.length];
+        values = new int[keys.length];
+        mask = keys.length - 1;
+
+        Arrays.fill(keys, FREE_KEY);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+
+            if (oldKeys[i] != FREE_KEY) {
+
+                int slot = getSlot(oldKeys[i]);
+
+                while (keys[slot] != FREE_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Opens the files written into the output folder. If the compressor is given, the gzip compressed copies are written
+ * next to the files, so web servers can serve them precompressed. Otherwise the copies left by previous builds are
+ * deleted, as they would be served instead of the updated files.
+ */
+public class OutputFiles {
+
+    public static Writer newWriter(Path path, boolean skipUnchanged, GzipCompressor compressor) throws IOException {
+
+        if (compressor == null) {
+            Files.deleteIfExists(GzipCompressor.getCompressedPath(path));
+        }
+
+        if (skipUnchanged) {
+            return new ChangedFileWriter(path, compressor);
+        }
+
+        return (compressor != null) ? compressor.newWriter(path) : Files.newBufferedWriter(path);
+    }
+
+    /**
+     * Deletes the file together with its compressed copy.
+     */
+    public static boolean deleteIfExists(Path path) throws IOException {
+
+        Files.deleteIfExists(GzipCompressor.getCompressedPath(path));
+
+        return Files.deleteIfExists(path);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import java.util.Arrays;
+
+/**
+ * Encodes the token positions of a term in a single file. In memory, the position count and the gaps between the
+ * ascending positions are stored as byte varints. In the output, the same numbers are written as the base64 varints
+ * of the compact index format, see {@link CompactPostingCodec}.
+ */
+public class PositionCodec {
+
+    private static final int PAYLOAD_BITS = 7;
+    private static final int PAYLOAD_MASK = (1 << PAYLOAD_BITS) - 1;
+    private static final int CONTINUATION_FLAG = 1 << PAYLOAD_BITS;
+
+    public static byte[] encode(int[] positions, int start, int end) {
+
+        byte[] block = new byte[5 * (end - start + 1)];
+
+        int length = writeVarint(block, 0, end - start);
+        int previousPosition = 0;
+
+        for (int i = start; i < end; i++) {
+            length = writeVarint(block, length, positions[i] - previousPosition);
+            previousPosition = positions[i];
+        }
+
+        return Arrays.copyOf(block, length);
+    }
+
+    public static int[] decode(byte[] block) {
+
+        int[] offset = {0};
+        int[] positions = new int[readVarint(block, offset)];
+        int position = 0;
+
+        for (int i = 0; i < positions.length; i++) {
+            position += readVarint(block, offset);
+            positions[i] = position;
+        }
+
+        return positions;
+    }
+
+    /**
+     * Appends the block in the output format.
+     */
+    public static void appendTo(StringBuilder builder, byte[] block) {
+
+        int[] offset = {0};
+
+        while (offset[0] < block.length) {
+            CompactPostingCodec.writeVarint(builder, readVarint(block, offset));
+        }
+    }
+
+    /**
+     * Decodes the blocks written one after another in the output format.
+     */
+    public static int[][] decodeText(String encodedBlocks, int blockCount) {
+
+        int[][] blocks = new int[blockCount][];
+        int[] offset = {0};
+
+        for (int i = 0; i < blockCount; i++) {
+
+            blocks[i] = new int[(int) CompactPostingCodec.readVarint(encodedBlocks, offset)];
+            int position = 0;
+
+            for (int j = 0; j < blocks[i].length; j++) {
+                position += (int) CompactPostingCodec.readVarint(encodedBlocks, offset);
+                blocks[i][j] = position;
+            }
+        }
+
+        return blocks;
+    }
+
+    private static int writeVarint(byte[] block, int offset, int value) {
+
+        while ((value & ~PAYLOAD_MASK) != 0) {
+            block[offset++] = (byte) ((value & PAYLOAD_MASK) | CONTINUATION_FLAG);
+            value >>>= PAYLOAD_BITS;
+        }
+
+        block[offset++] = (byte) value;
+
+        return offset;
+    }
+
+    private static int readVarint(byte[] block, int[] offset) {
+
+        int value = 0;
+        int shift = 0;
+        int digit;
+
+        do {
+            digit = block[offset[0]++] & 0xFF;
+            value |= (digit & PAYLOAD_MASK) << shift;
+            shift += PAYLOAD_BITS;
+
+        } while ((digit & CONTINUATION_FLAG) != 0);
+
+        return value;
+    }
+}
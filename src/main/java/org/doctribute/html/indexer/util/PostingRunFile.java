@@ -0,0 +1,255 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import org.doctribute.html.indexer.model.PostingList;
+
+/**
+ * Stores postings sorted by the term in a temporary run file, which is written and read sequentially. Each entry
+ * consists of the term length, the UTF-8 encoded term, the posting count and the file index and scoring pairs.
+ */
+public class PostingRunFile {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public interface TermHandler {
+
+        void handleTerm(String term, PostingList postingList) throws IOException;
+    }
+
+    public static void write(Path path, Map<String, PostingList> indicesMap) throws IOException {
+
+        List<String> keyList = new ArrayList<>(indicesMap.keySet());
+        Collections.sort(keyList);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+            for (String key : keyList) {
+
+                byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+                PostingList postingList = indicesMap.get(key);
+
+                buffer = ensureSpace(channel, buffer, 8 + keyBytes.length);
+                buffer.putInt(keyBytes.length).put(keyBytes).putInt(postingList.size());
+
+                for (int i = 0; i < postingList.size(); i++) {
+                    buffer = ensureSpace(channel, buffer, 8);
+                    buffer.putInt(postingList.getFileIndex(i)).putInt(postingList.getScoring(i));
+                }
+            }
+
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Passes the terms of all the runs in the sorted order, each with the postings of all the runs merged. The file
+     * indices of every run are shifted by the offset at the same position. Only the postings of a single term are
+     * kept in memory.
+     */
+    public static void merge(List<Path> runPathList, int[] fileIndexOffsets, TermHandler termHandler) throws IOException {
+
+        List<Reader> readerList = new ArrayList<>();
+
+        try {
+            PriorityQueue<Reader> readerQueue = new PriorityQueue<>(Math.max(runPathList.size(), 1), Comparator.comparing(Reader::getTerm));
+
+            for (int i = 0; i < runPathList.size(); i++) {
+
+                Reader reader = new Reader(runPathList.get(i), fileIndexOffsets[i]);
+                readerList.add(reader);
+
+                if (reader.next()) {
+                    readerQueue.add(reader);
+                }
+            }
+
+            while (!readerQueue.isEmpty()) {
+
+                Reader reader = readerQueue.poll();
+
+                String term = reader.getTerm();
+
+                // the lists of all the runs are collected first, so they are merged at once
+                List<PostingList> postingListList = new ArrayList<>();
+                postingListList.add(reader.getPostingList());
+
+                if (reader.next()) {
+                    readerQueue.add(reader);
+                }
+
+                while (!readerQueue.isEmpty() && readerQueue.peek().getTerm().equals(term)) {
+
+                    reader = readerQueue.poll();
+
+                    postingListList.add(reader.getPostingList());
+
+                    if (reader.next()) {
+                        readerQueue.add(reader);
+                    }
+                }
+
+                termHandler.handleTerm(term, PostingList.merge(postingListList));
+            }
+
+        } finally {
+            for (Reader reader : readerList) {
+                reader.close();
+            }
+        }
+    }
+
+    private static ByteBuffer ensureSpace(FileChannel channel, ByteBuffer buffer, int size) throws IOException {
+
+        if (buffer.remaining() < size) {
+
+            flush(channel, buffer);
+
+            if (buffer.capacity() < size) {
+                return ByteBuffer.allocateDirect(size);
+            }
+        }
+
+        return buffer;
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+
+    /**
+     * Reads the entries one by one in the order they have been written.
+     */
+    public static class Reader implements Closeable {
+
+        private final FileChannel channel;
+        private final int fileIndexOffset;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private String term;
+        private PostingList postingList;
+
+        public Reader(Path path) throws IOException {
+            this(path, 0);
+        }
+
+        /**
+         * The file indices read are shifted by the given offset.
+         */
+        public Reader(Path path, int fileIndexOffset) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.fileIndexOffset = fileIndexOffset;
+            this.buffer.flip();
+        }
+
+        /**
+         * Moves to the next entry and returns false if there is none.
+         */
+        public boolean next() throws IOException {
+
+            if (!fill(4)) {
+                term = null;
+                postingList = null;
+                return false;
+            }
+
+            int termLength = buffer.getInt();
+
+            require(termLength + 4);
+
+            byte[] termBytes = new byte[termLength];
+            buffer.get(termBytes);
+            term = new String(termBytes, StandardCharsets.UTF_8);
+
+            int size = buffer.getInt();
+
+            postingList = new PostingList(size);
+
+            for (int i = 0; i < size; i++) {
+                require(8);
+                postingList.add(buffer.getInt() + fileIndexOffset, buffer.getInt());
+            }
+
+            return true;
+        }
+
+        public String getTerm() {
+            return term;
+        }
+
+        public PostingList getPostingList() {
+            return postingList;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void require(int size) throws IOException {
+
+            if (!fill(size)) {
+                throw new IOException("The run file is truncated.");
+            }
+        }
+
+        private boolean fill(int size) throws IOException {
+
+            if (buffer.remaining() >= size) {
+                return true;
+            }
+
+            if (buffer.capacity() < size) {
+                ByteBuffer largerBuffer = ByteBuffer.allocateDirect(size);
+                largerBuffer.put(buffer);
+                buffer = largerBuffer;
+            } else {
+                buffer.compact();
+            }
+
+            while (buffer.position() < size && channel.read(buffer) >= 0) {
+            }
+
+            buffer.flip();
+
+            return buffer.remaining() >= size;
+        }
+    }
+}
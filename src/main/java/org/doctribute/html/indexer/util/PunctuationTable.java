@@ -0,0 +1,403 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Lookup table compiled from the punctuation regex pattern. Supported are alternatives of single characters
+ * or character classes, optionally repeated (e.g. <code>[-][-]+</code>), which covers the default pattern as well
+ * as the usual custom ones. For other patterns {@link #compile(String)} returns null and the regex has to be used.
+ */
+public class PunctuationTable {
+
+    private static final byte KIND_NONE = 0;
+    private static final byte KIND_SINGLE = 1;
+    private static final int MAX_RUN_CLASS_COUNT = Byte.MAX_VALUE - 1;
+
+    private final byte[] kinds = new byte[Character.MAX_VALUE + 1];
+    private final int[] minRunLengths;
+
+    private PunctuationTable(BitSet singleChars, List<BitSet> runClassList, List<Integer> minRunLengthList) {
+
+        for (int ch = singleChars.nextSetBit(0); ch >= 0; ch = singleChars.nextSetBit(ch + 1)) {
+            kinds[ch] = KIND_SINGLE;
+        }
+
+        minRunLengths = new int[runClassList.size()];
+
+        for (int i = 0; i < runClassList.size(); i++) {
+
+            BitSet runClass = runClassList.get(i);
+
+            for (int ch = runClass.nextSetBit(0); ch >= 0; ch = runClass.nextSetBit(ch + 1)) {
+                kinds[ch] = (byte) (i + 2);
+            }
+
+            minRunLengths[i] = minRunLengthList.get(i);
+        }
+    }
+
+    /**
+     * Marks the punctuation characters in the given range and returns the number of marked characters.
+     * The result is the same as replacing the original regex pattern matches with spaces.
+     */
+    public int mark(char[] chars, int start, int end, boolean[] marks) {
+
+        int count = 0;
+        int i = start;
+
+        while (i < end) {
+
+            byte kind = kinds[chars[i]];
+
+            if (kind == KIND_NONE) {
+                marks[i++] = false;
+
+            } else if (kind == KIND_SINGLE) {
+                marks[i++] = true;
+                count++;
+
+            } else {
+
+                int runEnd = i + 1;
+
+                while (runEnd < end && kinds[chars[runEnd]] == kind) {
+                    runEnd++;
+                }
+
+                boolean mark = (runEnd - i >= minRunLengths[kind - 2]);
+
+                if (mark) {
+                    count += runEnd - i;
+                }
+
+                while (i < runEnd) {
+                    marks[i++] = mark;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    public static PunctuationTable compile(String regexPattern) {
+
+        if (regexPattern == null || regexPattern.isEmpty()) {
+            return null;
+        }
+
+        BitSet singleChars = new BitSet();
+        List<BitSet> runClassList = new ArrayList<>();
+        List<Integer> minRunLengthList = new ArrayList<>();
+
+        PatternReader reader = new PatternReader(regexPattern);
+
+        while (true) {
+
+            // every alternative is a sequence of the same character class, only the last item can be repeated
+            BitSet alternativeChars = null;
+            int length = 0;
+            int minRepeatCount = 1;
+            boolean repeated = false;
+
+            while (!reader.atEnd() && reader.peek() != '|') {
+
+                if (repeated) {
+                    return null;
+                }
+
+                BitSet chars = reader.readAtom();
+
+                if (chars == null || chars.isEmpty() || (alternativeChars != null && !alternativeChars.equals(chars))) {
+                    return null;
+                }
+
+                alternativeChars = chars;
+
+                int repeatCount = reader.readMinRepeatCount();
+
+                if (repeatCount < 0) {
+                    return null;
+                }
+
+                if (repeatCount > 0) {
+                    repeated = true;
+                    minRepeatCount = repeatCount;
+                }
+
+                length++;
+            }
+
+            if (alternativeChars == null) {
+                // an empty alternative would match everywhere
+                return null;
+            }
+
+            if (length == 1 && minRepeatCount == 1) {
+                singleChars.or(alternativeChars);
+
+            } else if (repeated) {
+                runClassList.add(alternativeChars);
+                minRunLengthList.add(length - 1 + minRepeatCount);
+
+            } else {
+                // a fixed length sequence like '--' doesn't behave like a character run
+                return null;
+            }
+
+            if (reader.atEnd()) {
+                break;
+            }
+
+            reader.next();
+        }
+
+        // the runs are only equivalent to the regex if no character belongs to two different alternatives
+        if (runClassList.size() > MAX_RUN_CLASS_COUNT) {
+            return null;
+        }
+
+        BitSet usedChars = (BitSet) singleChars.clone();
+
+        for (BitSet runClass : runClassList) {
+
+            if (runClass.intersects(usedChars)) {
+                return null;
+            }
+
+            usedChars.or(runClass);
+        }
+
+        return new PunctuationTable(singleChars, runClassList, minRunLengthList);
+    }
+
+    private static class PatternReader {
+
+        private final String pattern;
+        private int pos = 0;
+
+        PatternReader(String pattern) {
+            this.pattern = pattern;
+        }
+
+        boolean atEnd() {
+            return pos >= pattern.length();
+        }
+
+        char peek() {
+            return pattern.charAt(pos);
+        }
+
+        char next() {
+            return pattern.charAt(pos++);
+        }
+
+        BitSet readAtom() {
+
+            char ch = next();
+
+            if (ch == '[') {
+                return readCharacterClass();
+            }
+
+            int literal = (ch == '\\') ? readEscape() : readLiteral(ch);
+
+            if (literal < 0) {
+                return null;
+            }
+
+            BitSet chars = new BitSet();
+            chars.set(literal);
+
+            return chars;
+        }
+
+        private BitSet readCharacterClass() {
+
+            // negations and a leading ']' are left to the regex engine
+            if (atEnd() || peek() == '^' || peek() == ']') {
+                return null;
+            }
+
+            BitSet chars = new BitSet();
+
+            while (!atEnd()) {
+
+                char ch = next();
+
+                if (ch == ']') {
+                    return chars;
+                }
+
+                // nested classes, unions and intersections
+                if (ch == '[' || (ch == '&' && !atEnd() && peek() == '&')) {
+                    return null;
+                }
+
+                int from = readClassMember(ch);
+
+                if (from < 0) {
+                    return null;
+                }
+
+                if (pos + 1 < pattern.length() && peek() == '-' && pattern.charAt(pos + 1) != ']') {
+
+                    next();
+
+                    int to = readClassMember(next());
+
+                    if (to < from) {
+                        return null;
+                    }
+
+                    chars.set(from, to + 1);
+
+                } else {
+                    chars.set(from);
+                }
+            }
+
+            return null;
+        }
+
+        private int readClassMember(char ch) {
+
+            if (ch == '\\') {
+                return readEscape();
+            }
+
+            return (ch == '[' || Character.isSurrogate(ch)) ? -1 : ch;
+        }
+
+        /**
+         * Returns 0 if there is no quantifier, the minimal count for <code>+</code> and <code>{n,}</code>
+         * and -1 for unsupported quantifiers.
+         */
+        int readMinRepeatCount() {
+
+            if (atEnd()) {
+                return 0;
+            }
+
+            int count;
+
+            switch (peek()) {
+                case '+':
+                    next();
+                    count = 1;
+                    break;
+                case '{':
+                    next();
+                    int start = pos;
+                    while (!atEnd() && Character.isDigit(peek())) {
+                        next();
+                    }
+                    if (start == pos || atEnd() || next() != ',' || atEnd() || next() != '}') {
+                        return -1;
+                    }
+                    count = Integer.parseInt(pattern.substring(start, pos - 2));
+                    if (count < 1) {
+                        return -1;
+                    }
+                    break;
+                case '*':
+                case '?':
+                    return -1;
+                default:
+                    return 0;
+            }
+
+            // lazy and possessive quantifiers
+            if (!atEnd() && (peek() == '?' || peek() == '+')) {
+                return -1;
+            }
+
+            return count;
+        }
+
+        private int readLiteral(char ch) {
+
+            if (".^$|?*+(){}]".indexOf(ch) >= 0 || Character.isSurrogate(ch)) {
+                return -1;
+            }
+
+            return ch;
+        }
+
+        private int readEscape() {
+
+            if (atEnd()) {
+                return -1;
+            }
+
+            char ch = next();
+
+            switch (ch) {
+                case 't':
+                    return '\t';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 'f':
+                    return '\f';
+                case 'a':
+                    return '\u0007';
+                case 'e':
+                    return '\u001B';
+                case 'u':
+                    return readHex(4);
+                case 'x':
+                    return readHex(2);
+            }
+
+            // other letters and digits denote character classes, back references etc.
+            if (Character.isLetterOrDigit(ch) || Character.isSurrogate(ch)) {
+                return -1;
+            }
+
+            return ch;
+        }
+
+        private int readHex(int digitCount) {
+
+            if (pos + digitCount > pattern.length()) {
+                return -1;
+            }
+
+            int ch = 0;
+
+            for (int i = 0; i < digitCount; i++) {
+
+                int digit = Character.digit(next(), 16);
+
+                if (digit < 0) {
+                    return -1;
+                }
+
+                ch = ch * 16 + digit;
+            }
+
+            return Character.isSurrogate((char) ch) ? -1 : ch;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import java.nio.CharBuffer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Removes stopwords from the text. The stopwords are looked up in a hash set per word, so the cost doesn't depend
+ * on the number of stopwords. The result is the same as replacing the <code>\bword1\b|\bword2\b|...</code> regex
+ * pattern produced by {@link StopwordsParser} with an empty string. Patterns which can't be expressed as a set of
+ * words (e.g. stopwords containing spaces or regex syntax) are still applied as a regex.
+ */
+public class StopwordsFilter {
+
+    private static final String WORD_BOUNDARY = "\\b";
+
+    // char buffers allow lookups straight from the tokenizer buffer
+    private final Set<CharBuffer> stopwords;
+    private final Pattern pattern;
+
+    public StopwordsFilter(Collection<String> stopwords) {
+
+        if (stopwords.stream().allMatch(StopwordsFilter::isWord)) {
+            this.stopwords = toCharBufferSet(stopwords);
+            this.pattern = null;
+
+        } else {
+
+            StringBuilder regexPattern = new StringBuilder();
+
+            for (String stopword : stopwords) {
+                if (regexPattern.length() > 0) {
+                    regexPattern.append("|");
+                }
+                regexPattern.append(WORD_BOUNDARY).append(Pattern.quote(stopword)).append(WORD_BOUNDARY);
+            }
+
+            this.stopwords = new HashSet<>();
+            this.pattern = Pattern.compile(regexPattern.toString());
+        }
+    }
+
+    private StopwordsFilter(Pattern pattern) {
+        this.stopwords = new HashSet<>();
+        this.pattern = pattern;
+    }
+
+    public static StopwordsFilter compile(String stopwordsRegexPattern) {
+
+        Set<String> stopwordSet = new HashSet<>();
+
+        if (stopwordsRegexPattern != null) {
+
+            for (String alternative : stopwordsRegexPattern.split("\\|")) {
+
+                if (alternative.isEmpty()) {
+                    continue;
+                }
+
+                String stopword = null;
+
+                if (alternative.length() > 2 * WORD_BOUNDARY.length() && alternative.startsWith(WORD_BOUNDARY) && alternative.endsWith(WORD_BOUNDARY)) {
+                    stopword = alternative.substring(WORD_BOUNDARY.length(), alternative.length() - WORD_BOUNDARY.length());
+                }
+
+                if (stopword == null || !isWord(stopword)) {
+                    return new StopwordsFilter(Pattern.compile(stopwordsRegexPattern));
+                }
+
+                stopwordSet.add(stopword);
+            }
+        }
+
+        return new StopwordsFilter(stopwordSet);
+    }
+
+    public boolean isRegexBased() {
+        return pattern != null;
+    }
+
+    public boolean isEmpty() {
+        return pattern == null && stopwords.isEmpty();
+    }
+
+    /**
+     * Checks a single word, i.e. a maximal sequence of word characters. Not applicable to regex based filters.
+     */
+    public boolean isStopword(char[] chars, int offset, int length) {
+        return stopwords.contains(CharBuffer.wrap(chars, offset, length));
+    }
+
+    public String filter(String text) {
+
+        if (pattern != null) {
+            return pattern.matcher(text).replaceAll("");
+        }
+
+        if (stopwords.isEmpty()) {
+            return text;
+        }
+
+        StringBuilder builder = null;
+
+        int length = text.length();
+        int copiedUpTo = 0;
+        int i = 0;
+
+        while (i < length) {
+
+            if (!isWordCharAt(text, i)) {
+                i += Character.charCount(Character.codePointAt(text, i));
+                continue;
+            }
+
+            int start = i;
+
+            while (i < length && isWordCharAt(text, i)) {
+                i += Character.charCount(Character.codePointAt(text, i));
+            }
+
+            if (stopwords.contains(CharBuffer.wrap(text, start, i))) {
+
+                if (builder == null) {
+                    builder = new StringBuilder(length);
+                }
+
+                builder.append(text, copiedUpTo, start);
+                copiedUpTo = i;
+            }
+        }
+
+        if (builder == null) {
+            return text;
+        }
+
+        return builder.append(text, copiedUpTo, length).toString();
+    }
+
+    /**
+     * Mirrors the word character definition used by the <code>\b</code> boundary of the regex engine.
+     */
+    public static boolean isWordCharAt(CharSequence text, int i) {
+
+        int codePoint = Character.codePointAt(text, i);
+
+        if (codePoint == '_' || Character.isLetterOrDigit(codePoint)) {
+            return true;
+        }
+
+        if (Character.getType(codePoint) == Character.NON_SPACING_MARK) {
+
+            // a non-spacing mark is a word character only when it follows a base letter or digit,
+            // the regex engine steps back char by char, so surrogate pairs don't count as the base
+            for (int j = i - 1; j >= 0; j--) {
+
+                codePoint = Character.codePointAt(text, j);
+
+                if (Character.isLetterOrDigit(codePoint)) {
+                    return true;
+                }
+
+                if (Character.getType(codePoint) != Character.NON_SPACING_MARK) {
+                    return false;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * The same as {@link #isWordCharAt(CharSequence, int)} for the text in the given array range.
+     */
+    public static boolean isWordCharAt(char[] chars, int start, int i, int end) {
+
+        int codePoint = Character.codePointAt(chars, i, end);
+
+        if (codePoint == '_' || Character.isLetterOrDigit(codePoint)) {
+            return true;
+        }
+
+        if (Character.getType(codePoint) == Character.NON_SPACING_MARK) {
+
+            for (int j = i - 1; j >= start; j--) {
+
+                codePoint = Character.codePointAt(chars, j, end);
+
+                if (Character.isLetterOrDigit(codePoint)) {
+                    return true;
+                }
+
+                if (Character.getType(codePoint) != Character.NON_SPACING_MARK) {
+                    return false;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static Set<CharBuffer> toCharBufferSet(Collection<String> stopwords) {
+
+        Set<CharBuffer> charBufferSet = new HashSet<>();
+
+        for (String stopword : stopwords) {
+            charBufferSet.add(CharBuffer.wrap(stopword));
+        }
+
+        return charBufferSet;
+    }
+
+    private static boolean isWord(String text) {
+
+        if (text.isEmpty()) {
+            return false;
+        }
+
+        for (int i = 0; i < text.length(); i += Character.charCount(Character.codePointAt(text, i))) {
+            if (!isWordCharAt(text, i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
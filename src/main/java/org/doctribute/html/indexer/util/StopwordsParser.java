@@ -22,6 +22,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 public class StopwordsParser {
 
@@ -29,6 +31,17 @@ public class StopwordsParser {
 
         StringBuilder stopwordsRegexPattern = new StringBuilder();
 
+        for (String stopword : getStopwords(path)) {
+            stopwordsRegexPattern.append("\\b").append(stopword).append("\\b|");
+        }
+
+        return stopwordsRegexPattern.toString();
+    }
+
+    public static List<String> getStopwords(Path path) throws IOException {
+
+        List<String> stopwordList = new ArrayList<>();
+
         try (BufferedReader reader = Files.newBufferedReader(path)) {
 
             String line;
@@ -36,11 +49,11 @@ public class StopwordsParser {
             while ((line = reader.readLine()) != null) {
                 String[] chunks = line.split("\"");
                 if (chunks.length == 3) {
-                    stopwordsRegexPattern.append("\\b").append(chunks[1]).append("\\b|");
+                    stopwordList.add(chunks[1]);
                 }
             }
         }
 
-        return stopwordsRegexPattern.toString();
+        return stopwordList;
     }
 }
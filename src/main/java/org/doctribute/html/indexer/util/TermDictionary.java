@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns every distinct term a dense int ID, so the term string is kept only once for the whole build. The
+ * dictionary can be shared by several workers.
+ */
+public class TermDictionary {
+
+    private final ConcurrentHashMap<String, Integer> idMap = new ConcurrentHashMap<>();
+
+    // the terms are stored before the ID is published in the map, so readers of a known ID always find the term
+    private volatile String[] terms = new String[1024];
+    private int size = 0;
+
+    public int getId(String term) {
+
+        Integer id = idMap.get(term);
+
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (this) {
+
+            id = idMap.get(term);
+
+            if (id == null) {
+
+                if (size == terms.length) {
+                    terms = Arrays.copyOf(terms, 2 * size);
+                }
+
+                terms[size] = term;
+                id = size++;
+                idMap.put(term, id);
+            }
+
+            return id;
+        }
+    }
+
+    public String getTerm(int id) {
+        return terms[id];
+    }
+
+    /**
+     * Forgets all the terms, e.g. once the term vector of a file is extracted. No other worker may use the dictionary
+     * at the same time.
+     */
+    public synchronized void clear() {
+
+        idMap.clear();
+        Arrays.fill(terms, 0, size, null);
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.doctribute.html.indexer.model.FileInfo;
+import org.doctribute.html.indexer.model.TermVector;
+
+/**
+ * Keeps the titles and term vectors of the parsed files on disk, so pages with the same content are parsed just once
+ * by all the builds on the machine. An entry is keyed by the hash of the file content together with the settings
+ * affecting the extracted terms, e.g. the stemmer and the stopwords. Every entry is written into its own file moved
+ * into place at once, so the cache can be shared by concurrent builds.
+ * <p>
+ * The terms are sorted and stored without the prefix shared with the previous term, the lengths and scorings as
+ * varints. Once the cache exceeds its size, the least recently used entries are deleted.
+ */
+public class TermVectorCache {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String HASH_ALGORITHM = "SHA-1";
+    private static final String ENTRY_SUFFIX = ".tv";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Path folderPath;
+    private final long maxSize;
+
+    public TermVectorCache(Path folderPath, long maxSize) {
+        this.folderPath = folderPath;
+        this.maxSize = maxSize;
+    }
+
+    public Path getFolderPath() {
+        return folderPath;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the key of the file content indexed with the given settings.
+     */
+    public String getKey(Path path, String settingsFingerprint) throws IOException {
+
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance(HASH_ALGORITHM);
+            messageDigest.update(settingsFingerprint.getBytes(StandardCharsets.UTF_8));
+            messageDigest.update((byte) 0);
+
+            try (InputStream input = Files.newInputStream(path)) {
+
+                byte[] buffer = new byte[8192];
+                int count;
+
+                while ((count = input.read(buffer)) > 0) {
+                    messageDigest.update(buffer, 0, count);
+                }
+            }
+
+            byte[] hash = messageDigest.digest();
+            char[] chars = new char[2 * hash.length];
+
+            for (int i = 0; i < hash.length; i++) {
+                chars[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+                chars[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+            }
+
+            return new String(chars);
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Returns the cached entry or null if there is none. The title of the entry is set into the given file info.
+     * Unreadable entries, e.g. written by another format version, are deleted.
+     */
+    public TermVector read(String key, FileInfo fileInfo) throws IOException {
+
+        Path entryPath = getEntryPath(key);
+
+        if (Files.notExists(entryPath)) {
+            return null;
+        }
+
+        TermVector termVector;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(entryPath)))) {
+
+            if (input.readUnsignedByte() != FORMAT_VERSION) {
+                throw new IOException("Unsupported format version.");
+            }
+
+            String title = input.readBoolean() ? readString(input, "") : null;
+
+            int size = readVarint(input);
+            String[] terms = new String[size];
+            int[] scorings = new int[size];
+
+            String previousTerm = "";
+
+            for (int i = 0; i < size; i++) {
+                terms[i] = readString(input, previousTerm.substring(0, readVarint(input)));
+                scorings[i] = readVarint(input);
+                previousTerm = terms[i];
+            }
+
+            termVector = new TermVector(terms, scorings);
+            fileInfo.setTitle(title);
+
+        } catch (NoSuchFileException e) {
+            // evicted by another build in the meantime
+            return null;
+
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(entryPath);
+            return null;
+        }
+
+        try {
+            Files.setLastModifiedTime(entryPath, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // the entry has been read anyway
+        }
+
+        return termVector;
+    }
+
+    public void write(String key, String title, TermVector termVector) throws IOException {
+
+        Integer[] order = new Integer[termVector.size()];
+
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        Arrays.sort(order, Comparator.comparing(termVector::getTerm));
+
+        Path entryPath = getEntryPath(key);
+        Files.createDirectories(entryPath.getParent());
+
+        Path tempPath = Files.createTempFile(entryPath.getParent(), key, TEMP_SUFFIX);
+
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+
+                output.writeByte(FORMAT_VERSION);
+
+                output.writeBoolean(title != null);
+                if (title != null) {
+                    writeString(output, title);
+                }
+
+                writeVarint(output, order.length);
+
+                String previousTerm = "";
+
+                for (int i : order) {
+
+                    String term = termVector.getTerm(i);
+                    int prefixLength = getSharedPrefixLength(previousTerm, term);
+
+                    writeVarint(output, prefixLength);
+                    writeString(output, term.substring(prefixLength));
+                    writeVarint(output, termVector.getScoring(i));
+
+                    previousTerm = term;
+                }
+            }
+
+            try {
+                Files.move(tempPath, entryPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, entryPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits its size.
+     */
+    public void evict() throws IOException {
+
+        if (Files.notExists(folderPath)) {
+            return;
+        }
+
+        List<Path> entryPathList = new ArrayList<>();
+        List<BasicFileAttributes> attributesList = new ArrayList<>();
+        long[] totalSize = {0};
+
+        Files.walkFileTree(folderPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) {
+                if (path.getFileName().toString().endsWith(ENTRY_SUFFIX)) {
+                    entryPathList.add(path);
+                    attributesList.add(attributes);
+                    totalSize[0] += attributes.size();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path path, IOException e) {
+                // deleted by another build in the meantime
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        if (totalSize[0] <= maxSize) {
+            return;
+        }
+
+        Integer[] order = new Integer[entryPathList.size()];
+
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        Arrays.sort(order, Comparator.comparing(i -> attributesList.get(i).lastModifiedTime()));
+
+        for (int i : order) {
+
+            if (totalSize[0] <= maxSize) {
+                break;
+            }
+
+            Files.deleteIfExists(entryPathList.get(i));
+            totalSize[0] -= attributesList.get(i).size();
+        }
+    }
+
+    /**
+     * The entries are spread over subfolders named by the first two key digits, so no folder gets too large.
+     */
+    private Path getEntryPath(String key) {
+        return folderPath.resolve(key.substring(0, 2)).resolve(key.substring(2) + ENTRY_SUFFIX);
+    }
+
+    private static int getSharedPrefixLength(String text1, String text2) {
+
+        int length = Math.min(text1.length(), text2.length());
+        int i = 0;
+
+        while (i < length && text1.charAt(i) == text2.charAt(i)) {
+            i++;
+        }
+
+        // a surrogate pair is never split
+        if (i > 0 && Character.isHighSurrogate(text1.charAt(i - 1))) {
+            i--;
+        }
+
+        return i;
+    }
+
+    private static void writeString(OutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(output, bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input, String prefix) throws IOException {
+        byte[] bytes = new byte[readVarint(input)];
+        input.readFully(bytes);
+        return prefix + new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarint(OutputStream output, int value) throws IOException {
+
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        output.write(value);
+    }
+
+    private static int readVarint(DataInputStream input) throws IOException {
+
+        int value = 0;
+
+        for (int shift = 0; shift < 32; shift += 7) {
+
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed varint.");
+    }
+}
@@ -0,0 +1,488 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Splits the text into words in a single pass over a reusable buffer. Besides the words separated by whitespace
+ * and punctuation, words containing dots, colons or hyphens are split into chunks, e.g. <code>foo.bar</code>
+ * produces <code>foo.bar</code>, <code>foo</code> and <code>bar</code>. These characters are also stripped from the
+ * beginning and the end of the word. Stopwords are removed before that.
+ *
+ * The instance is not thread-safe.
+ */
+public class Tokenizer {
+
+    public interface TokenHandler {
+
+        void handleToken(String word);
+    }
+
+    private static final String CHUNK_SEPARATORS = ".:-";
+    private static final String LINE_TERMINATORS = "\u0085\u2028\u2029";
+    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+
+    private final PunctuationTable punctuationTable;
+    private final Pattern punctuationPattern;
+    private final StopwordsFilter stopwordsFilter;
+    private final boolean localeSpecificLowerCase;
+    private final Set<String> derivedWordSet = new HashSet<>();
+    private final StringBuilder segmentBuilder = new StringBuilder();
+    private final StringBuilder chunkBuilder = new StringBuilder();
+    private final StringBuilder deferredBuilder = new StringBuilder();
+    private boolean segmentStarted = false;
+
+    private char[] buffer = new char[64];
+    private boolean[] marks = new boolean[64];
+    private char[] wordBuffer = new char[64];
+
+    public Tokenizer(String punctuationRegexPattern, StopwordsFilter stopwordsFilter) {
+
+        this.punctuationPattern = Pattern.compile(punctuationRegexPattern);
+        this.stopwordsFilter = stopwordsFilter;
+
+        // the regex based stopwords may span several words, so they are applied on the entire text
+        this.punctuationTable = stopwordsFilter.isRegexBased() ? null : PunctuationTable.compile(punctuationRegexPattern);
+
+        String language = Locale.getDefault().getLanguage();
+        this.localeSpecificLowerCase = language.equals("tr") || language.equals("az") || language.equals("lt");
+    }
+
+    public void tokenize(CharSequence text, TokenHandler tokenHandler) {
+
+        if (punctuationTable == null) {
+            tokenizePreparedText(prepareText(text), tokenHandler);
+            return;
+        }
+
+        handleChunks(text, tokenHandler);
+    }
+
+    /**
+     * Tokenizes a text passed in several parts, e.g. by the SAX parser. The words spanning the part boundaries are
+     * kept together. The text is considered complete when {@link #finish(TokenHandler)} is called.
+     */
+    public void append(char[] chars, int start, int length, TokenHandler tokenHandler) {
+
+        if (punctuationTable == null) {
+            segmentBuilder.append(chars, start, length);
+            return;
+        }
+
+        int end = start + length;
+        int i = start;
+
+        while (i < end) {
+
+            if (isWhitespace(chars[i])) {
+
+                if (chunkBuilder.length() > 0) {
+                    completeChunk(tokenHandler);
+                }
+
+                i++;
+                continue;
+            }
+
+            // leading control characters are trimmed
+            if (!segmentStarted) {
+
+                if (chars[i] <= ' ') {
+                    i++;
+                    continue;
+                }
+
+                segmentStarted = true;
+            }
+
+            int chunkStart = i;
+
+            while (i < end && !isWhitespace(chars[i])) {
+                i++;
+            }
+
+            chunkBuilder.append(chars, chunkStart, i - chunkStart);
+        }
+    }
+
+    public void finish(TokenHandler tokenHandler) {
+
+        if (punctuationTable == null) {
+
+            if (segmentBuilder.length() > 0) {
+
+                String text = WHITESPACE_PATTERN.matcher(segmentBuilder).replaceAll(" ").trim();
+                segmentBuilder.setLength(0);
+
+                if (!text.isEmpty()) {
+                    tokenize(text, tokenHandler);
+                }
+            }
+
+            return;
+        }
+
+        if (chunkBuilder.length() > 0) {
+            completeChunk(tokenHandler);
+        }
+
+        if (deferredBuilder.length() > 0) {
+
+            // trailing control characters are trimmed the same way as by String.trim()
+            int end = deferredBuilder.length();
+
+            while (end > 0 && deferredBuilder.charAt(end - 1) <= ' ') {
+                end--;
+            }
+
+            deferredBuilder.setLength(end);
+
+            handleChunks(deferredBuilder, tokenHandler);
+            deferredBuilder.setLength(0);
+        }
+
+        segmentStarted = false;
+    }
+
+    /**
+     * Discards the text appended since the last {@link #finish(TokenHandler)} call.
+     */
+    public void reset() {
+        segmentBuilder.setLength(0);
+        chunkBuilder.setLength(0);
+        deferredBuilder.setLength(0);
+        segmentStarted = false;
+    }
+
+    private void completeChunk(TokenHandler tokenHandler) {
+
+        // a chunk ending with a control character can still turn out to be at the end of the text
+        if (chunkBuilder.charAt(chunkBuilder.length() - 1) <= ' ') {
+            deferredBuilder.append(' ').append(chunkBuilder);
+
+        } else {
+
+            if (deferredBuilder.length() > 0) {
+                handleChunks(deferredBuilder, tokenHandler);
+                deferredBuilder.setLength(0);
+            }
+
+            handleChunks(chunkBuilder, tokenHandler);
+        }
+
+        chunkBuilder.setLength(0);
+    }
+
+    private void handleChunks(CharSequence text, TokenHandler tokenHandler) {
+
+        // final sigma, dotted capital I and locale specific rules depend on the context or change the text length
+        boolean lowerCased = localeSpecificLowerCase || containsContextSensitiveChar(text);
+
+        if (lowerCased) {
+            text = text.toString().toLowerCase();
+        }
+
+        int length = text.length();
+        int i = 0;
+
+        while (i < length) {
+
+            if (isWhitespace(text.charAt(i))) {
+                i++;
+                continue;
+            }
+
+            int start = i;
+
+            while (i < length && !isWhitespace(text.charAt(i))) {
+                i++;
+            }
+
+            int chunkLength = i - start;
+
+            copyToBuffer(text, start, i, lowerCased);
+
+            if (punctuationTable.mark(buffer, 0, chunkLength, marks) == 0) {
+                handleRawWord(0, chunkLength, tokenHandler);
+                continue;
+            }
+
+            int j = 0;
+
+            while (j < chunkLength) {
+
+                if (marks[j]) {
+                    j++;
+                    continue;
+                }
+
+                int wordStart = j;
+
+                while (j < chunkLength && !marks[j]) {
+                    j++;
+                }
+
+                handleRawWord(wordStart, j, tokenHandler);
+            }
+        }
+    }
+
+    /**
+     * Applies the original regex based steps, used when the patterns can't be compiled to lookup tables.
+     */
+    private String prepareText(CharSequence text) {
+
+        String preparedText = text.toString().toLowerCase();
+        preparedText = punctuationPattern.matcher(preparedText).replaceAll(" ");
+        preparedText = stopwordsFilter.filter(preparedText);
+
+        return preparedText;
+    }
+
+    private void tokenizePreparedText(String text, TokenHandler tokenHandler) {
+
+        int length = text.length();
+        int i = 0;
+
+        while (i < length) {
+
+            if (isWhitespace(text.charAt(i))) {
+                i++;
+                continue;
+            }
+
+            int start = i;
+
+            while (i < length && !isWhitespace(text.charAt(i))) {
+                i++;
+            }
+
+            ensureWordBufferCapacity(i - start);
+            text.getChars(start, i, wordBuffer, 0);
+
+            handleWord(i - start, tokenHandler);
+        }
+    }
+
+    private void copyToBuffer(CharSequence text, int start, int end, boolean lowerCased) {
+
+        ensureBufferCapacity(end - start);
+
+        for (int i = start; i < end; i++) {
+            buffer[i - start] = lowerCased ? text.charAt(i) : Character.toLowerCase(text.charAt(i));
+        }
+    }
+
+    private static boolean containsContextSensitiveChar(CharSequence text) {
+
+        for (int i = 0; i < text.length(); i++) {
+
+            char ch = text.charAt(i);
+
+            if (ch == '\u03A3' || ch == '\u0130' || Character.isSurrogate(ch)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Removes stopwords from the buffer range and passes the rest to {@link #handleWord(int, TokenHandler)}.
+     */
+    private void handleRawWord(int start, int end, TokenHandler tokenHandler) {
+
+        ensureWordBufferCapacity(end - start);
+
+        if (stopwordsFilter.isEmpty()) {
+            System.arraycopy(buffer, start, wordBuffer, 0, end - start);
+            handleWord(end - start, tokenHandler);
+            return;
+        }
+
+        int length = 0;
+        int i = start;
+
+        while (i < end) {
+
+            int runStart = i;
+            boolean wordChar = StopwordsFilter.isWordCharAt(buffer, start, i, end);
+
+            while (i < end && StopwordsFilter.isWordCharAt(buffer, start, i, end) == wordChar) {
+                i += Character.charCount(Character.codePointAt(buffer, i, end));
+            }
+
+            if (!wordChar || !stopwordsFilter.isStopword(buffer, runStart, i - runStart)) {
+                System.arraycopy(buffer, runStart, wordBuffer, length, i - runStart);
+                length += i - runStart;
+            }
+        }
+
+        handleWord(length, tokenHandler);
+    }
+
+    /**
+     * Emits the word held in the word buffer together with the chunks derived from it.
+     */
+    private void handleWord(int length, TokenHandler tokenHandler) {
+
+        if (length == 0) {
+            return;
+        }
+
+        if (containsAny(wordBuffer, 0, length, LINE_TERMINATORS)) {
+            handleWordWithLineTerminators(new String(wordBuffer, 0, length), tokenHandler);
+            return;
+        }
+
+        int start = 0;
+        int end = length;
+
+        while (start < end && isChunkSeparator(wordBuffer[start])) {
+            start++;
+        }
+
+        while (end > start && isChunkSeparator(wordBuffer[end - 1])) {
+            end--;
+        }
+
+        if (start == 0 && end == length) {
+            tokenHandler.handleToken(new String(wordBuffer, 0, length));
+
+        } else if (start < end) {
+            tokenHandler.handleToken(new String(wordBuffer, start, end - start));
+
+        } else {
+            return;
+        }
+
+        if (!containsAny(wordBuffer, start, end, CHUNK_SEPARATORS)) {
+            return;
+        }
+
+        // keep derived words unique per single word
+        derivedWordSet.clear();
+
+        int i = start;
+
+        while (i <= end) {
+
+            int chunkStart = i;
+
+            while (i < end && !isChunkSeparator(wordBuffer[i])) {
+                i++;
+            }
+
+            if (i > chunkStart) {
+
+                String chunk = new String(wordBuffer, chunkStart, i - chunkStart);
+
+                if (derivedWordSet.add(chunk)) {
+                    tokenHandler.handleToken(chunk);
+                }
+            }
+
+            i++;
+        }
+    }
+
+    /**
+     * The regex dot doesn't match line terminators, which affects the original stripping of enclosing punctuation,
+     * so such rare words are processed the original way.
+     */
+    private void handleWordWithLineTerminators(String word, TokenHandler tokenHandler) {
+
+        List<String> wordList = new ArrayList<>();
+        Collection<String> derivedWordCollection = new HashSet<>();
+
+        if (word.matches("^[\\.:-]+.*") || word.matches(".*[\\.:-]+$")) {
+
+            while (word.matches("^[\\.:-]+.*") || word.matches(".*[\\.:-]+$")) {
+                word = word.replaceAll("^[\\.:-]+(.*)", "$1");
+                word = word.replaceAll("(.*)[\\.:-]+$", "$1");
+            }
+
+            derivedWordCollection.add(word);
+
+        } else {
+            wordList.add(word);
+        }
+
+        String[] chunks = word.split("[\\.:-]");
+
+        if (chunks.length > 1) {
+            for (String chunk : chunks) {
+                if (!chunk.isEmpty()) {
+                    derivedWordCollection.add(chunk);
+                }
+            }
+        }
+
+        wordList.addAll(derivedWordCollection);
+
+        for (String derivedWord : wordList) {
+            if (!derivedWord.isEmpty()) {
+                tokenHandler.handleToken(derivedWord);
+            }
+        }
+    }
+
+    private void ensureBufferCapacity(int capacity) {
+
+        if (buffer.length < capacity) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, 2 * buffer.length));
+            marks = new boolean[buffer.length];
+        }
+    }
+
+    private void ensureWordBufferCapacity(int capacity) {
+
+        if (wordBuffer.length < capacity) {
+            wordBuffer = new char[Math.max(capacity, 2 * wordBuffer.length)];
+        }
+    }
+
+    private static boolean containsAny(char[] chars, int start, int end, String searchChars) {
+
+        for (int i = start; i < end; i++) {
+            if (searchChars.indexOf(chars[i]) >= 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isChunkSeparator(char ch) {
+        return ch == '.' || ch == ':' || ch == '-';
+    }
+
+    // the same characters as matched by the regex \s
+    private static boolean isWhitespace(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r';
+    }
+}
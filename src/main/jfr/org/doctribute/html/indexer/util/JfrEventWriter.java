@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+package org.doctribute.html.indexer.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits the custom JFR events. Compiled separately from the other sources, as the jdk.jfr module isn't available in
+ * every JDK supported by the indexer, and loaded by its name only if the events are enabled.
+ */
+class JfrEventWriter implements BuildEventWriter {
+
+    @Name("org.doctribute.html.indexer.FileIndexed")
+    @Label("File Indexed")
+    @Description("A single HTML file parsed, tokenized and stemmed")
+    @Category("HTML Files Indexer")
+    @StackTrace(false)
+    static class FileIndexedEvent extends Event {
+
+        @Label("Path")
+        String path;
+
+        @Label("Indexing Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long indexingTime;
+
+        @Label("Token Count")
+        int tokenCount;
+    }
+
+    @Name("org.doctribute.html.indexer.BuildPhase")
+    @Label("Build Phase")
+    @Description("Total time of a build phase, summed over all the worker threads")
+    @Category("HTML Files Indexer")
+    @StackTrace(false)
+    static class BuildPhaseEvent extends Event {
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Phase Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long phaseTime;
+    }
+
+    @Override
+    public void writeFileEvent(String path, long nanos, int tokenCount) {
+
+        FileIndexedEvent event = new FileIndexedEvent();
+
+        if (event.isEnabled()) {
+            event.path = path;
+            event.indexingTime = nanos;
+            event.tokenCount = tokenCount;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void writePhaseEvent(String phase, long nanos) {
+
+        BuildPhaseEvent event = new BuildPhaseEvent();
+
+        if (event.isEnabled()) {
+            event.phase = phase;
+            event.phaseTime = nanos;
+            event.commit();
+        }
+    }
+}
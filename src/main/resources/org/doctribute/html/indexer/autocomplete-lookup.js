@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+
+/*
+ * Returns the indexed terms starting with the given lower case text, the highest ranked first, e.g.
+ * findCompletions("con") returns ["content", "configur"].
+ *
+ * Only the longest prefix of the text present in the ac array has to be inspected. It either equals the text or it
+ * holds all the terms starting with it, so the lookup takes the same time regardless of the index size.
+ */
+function findCompletions(text) {
+
+    for (var i = text.length; i >= 0; i--) {
+
+        var prefix = text.substring(0, i);
+        var completions = ac[prefix];
+
+        if (completions !== undefined) {
+
+            var terms = [];
+            var suffixes = completions.split(",");
+
+            for (var j = 0; j < suffixes.length; j++) {
+                var term = prefix + suffixes[j];
+                if (term.indexOf(text) === 0) {
+                    terms.push(term);
+                }
+            }
+
+            return terms;
+        }
+    }
+
+    return [];
+}
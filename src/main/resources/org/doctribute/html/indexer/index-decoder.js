@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+
+/*
+ * Decodes the postings of the compact index format into the "fileIndex*scoring,..." form of the text format,
+ * e.g. w["term"] = decodePostings(w["term"]);
+ *
+ * Every posting is a varint of the file index difference, whose lowest bit flags that the quantized scoring follows
+ * (otherwise the scoring is 1). Each base64 char of a varint holds five bits and a flag whether more chars follow.
+ */
+function decodePostings(encodedPostings) {
+
+    var BASE64_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+    var position = 0;
+
+    function readVarint() {
+        var value = 0;
+        var multiplier = 1;
+        var digit;
+        do {
+            digit = BASE64_CHARS.indexOf(encodedPostings.charAt(position++));
+            value += (digit & 31) * multiplier;
+            multiplier *= 32;
+        } while (digit & 32);
+        return value;
+    }
+
+    function dequantize(quantizedScoring) {
+        if (quantizedScoring < 32) {
+            return quantizedScoring;
+        }
+        return Math.round(32 * Math.pow(2, (quantizedScoring - 32) / 8));
+    }
+
+    var postings = [];
+    var fileIndex = 0;
+
+    while (position < encodedPostings.length) {
+        var value = readVarint();
+        fileIndex += Math.floor(value / 2);
+        postings.push(fileIndex + "*" + ((value % 2) ? dequantize(readVarint()) : 1));
+    }
+
+    return postings.join(",");
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016-present doctribute (http://doctribute.com/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ * Jan Tosovsky
+ */
+
+/*
+ * Decodes the position blocks of a term, e.g. decodePositions(p["term"]) returns an array holding the ascending
+ * token positions for every posting of w["term"], in the same order.
+ *
+ * Every block starts with the position count followed by the gaps between the positions. The numbers are written as
+ * the varints of the compact index format, see index-decoder.js.
+ */
+function decodePositions(encodedPositions) {
+
+    var BASE64_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+    var offset = 0;
+
+    function readVarint() {
+        var value = 0;
+        var multiplier = 1;
+        var digit;
+        do {
+            digit = BASE64_CHARS.indexOf(encodedPositions.charAt(offset++));
+            value += (digit & 31) * multiplier;
+            multiplier *= 32;
+        } while (digit & 32);
+        return value;
+    }
+
+    var blocks = [];
+
+    while (offset < encodedPositions.length) {
+        var count = readVarint();
+        var positions = [];
+        var position = 0;
+        for (var i = 0; i < count; i++) {
+            position += readVarint();
+            positions.push(position);
+        }
+        blocks.push(positions);
+    }
+
+    return blocks;
+}